@@ -0,0 +1,229 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end load performance of {@link EarthquakeActivity} against {@link MockFdsnServer},
+ * which serves a {@link SyntheticEarthquakeCatalog}. Every metric is compared with the baselines
+ * in assets/performance_baselines.json and the test fails when a metric exceeds its baseline by
+ * more than the allowed tolerance.
+ *
+ * <p>The baselines are hand-picked budgets, they were not measured on a reference device. Each
+ * run logs the measured value of every metric, to re-baseline run the suite a few times on the
+ * device it should guard, e.g. {@code ./gradlew connectedAndroidTest} with
+ * {@code adb logcat -s EarthquakeLoadPerformanceTest}, and use the slowest value of each metric.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class EarthquakeLoadPerformanceTest {
+
+    private static final String LOG_TAG = EarthquakeLoadPerformanceTest.class.getSimpleName();
+
+    private static final long TIMEOUT_MILLIS = 20000;
+    private static final int PAGE_SIZE = 20;
+    private static final int MEASURED_PAGES = 3;
+
+    // 240 M4.5+ events over 39 days, about what the USGS feed lists for such a period
+    private static final int EVENT_COUNT = 240;
+    private static final int EVENT_DAYS = 39;
+    private static final long EVENT_SEED = 42;
+
+    @Rule
+    public ActivityTestRule<EarthquakeActivity> mActivityRule =
+            new ActivityTestRule<>(EarthquakeActivity.class, false, false);
+
+    private MockFdsnServer mServer;
+    private JSONObject mBaselines;
+
+    private ResilientRequestExecutor mPreviousRequestExecutor;
+    private ResponseCache mPreviousResponseCache;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockFdsnServer(SyntheticEarthquakeCatalog.generate(EVENT_COUNT,
+                System.currentTimeMillis(), EVENT_DAYS, EVENT_SEED));
+        mServer.setLatency(100);
+        mServer.setBandwidth(256 * 1024);
+        mServer.start();
+
+        mBaselines = new JSONObject(readAsset("performance_baselines.json"));
+
+        // Every test starts cold, responses cached by an earlier test would never reach the server.
+        // The activity creates a new cache when there is none, so its files have to go as well.
+        Context context = InstrumentationRegistry.getTargetContext();
+        mPreviousResponseCache = QueryUtils.getResponseCache();
+        if (mPreviousResponseCache != null) {
+            mPreviousResponseCache.clear();
+        }
+        QueryUtils.setResponseCache(null);
+        deleteFiles(new File(context.getCacheDir(), "responses"));
+
+        // Neither should a circuit tripped by the injected errors, the fallback responses or the
+        // latencies which drive the hedging carry over from an earlier test
+        mPreviousRequestExecutor = QueryUtils.getRequestExecutor();
+        QueryUtils.setRequestExecutor(new ResilientRequestExecutor(new HttpTransport(15000, 10000)));
+
+        // Every generated event is at least M4.5, so all of them are listed
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(context.getString(R.string.settings_min_magnitude_key), "4.5")
+                .putString(context.getString(R.string.settings_order_by_key),
+                        context.getString(R.string.settings_order_by_most_recent_value))
+                .commit();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+
+        QueryUtils.setRequestExecutor(mPreviousRequestExecutor);
+        QueryUtils.setResponseCache(mPreviousResponseCache);
+    }
+
+    @Test
+    public void timeToFirstContent() throws Exception {
+        long elapsed = launchAndWaitForContent();
+
+        assertWithinBaseline("time_to_first_content_ms", elapsed);
+    }
+
+    @Test
+    public void timeToFirstContent_withInjectedErrors() throws Exception {
+        mServer.setErrorRates(0.3, 0.1);
+
+        long elapsed = launchAndWaitForContent();
+
+        assertWithinBaseline("time_to_first_content_with_errors_ms", elapsed);
+    }
+
+    @Test
+    public void pageLoadLatencyAndBytesTransferred() throws Exception {
+        launchAndWaitForContent();
+
+        long slowestPage = 0;
+        mServer.resetCounters();
+
+        for (int page = 0; page < MEASURED_PAGES; page++) {
+            int countBefore = getItemCount();
+            long start = SystemClock.elapsedRealtime();
+
+            scrollToBottom();
+            waitForItemCount(countBefore + PAGE_SIZE);
+
+            slowestPage = Math.max(slowestPage, SystemClock.elapsedRealtime() - start);
+        }
+
+        assertWithinBaseline("page_load_ms", slowestPage);
+        assertWithinBaseline("bytes_per_page", mServer.getBytesTransferred() / MEASURED_PAGES);
+    }
+
+    // Launch the activity against the mock server and return the milliseconds until the first rows are shown
+    private long launchAndWaitForContent() throws InterruptedException {
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), EarthquakeActivity.class);
+        intent.putExtra(EarthquakeActivity.EXTRA_REQUEST_URL, mServer.getQueryUrl());
+
+        long start = SystemClock.elapsedRealtime();
+        mActivityRule.launchActivity(intent);
+        waitForItemCount(1);
+
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    private void waitForItemCount(int count) throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+
+        while (getItemCount() < count) {
+            if (SystemClock.elapsedRealtime() > deadline) {
+                fail("Timed out waiting for " + count + " rows, " + getItemCount() + " are shown");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private int getItemCount() {
+        final AtomicInteger itemCount = new AtomicInteger();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                itemCount.set(getRecyclerView().getAdapter().getItemCount());
+            }
+        });
+
+        return itemCount.get();
+    }
+
+    private void scrollToBottom() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RecyclerView recyclerView = getRecyclerView();
+                recyclerView.scrollToPosition(recyclerView.getAdapter().getItemCount() - 1);
+            }
+        });
+    }
+
+    private RecyclerView getRecyclerView() {
+        return mActivityRule.getActivity().findViewById(R.id.earthquake_recycler_view);
+    }
+
+    private void assertWithinBaseline(String metric, long value) throws Exception {
+        long baseline = mBaselines.getLong(metric);
+        double limit = baseline * (1 + mBaselines.getDouble("tolerance"));
+
+        Log.i(LOG_TAG, metric + "=" + value + " (baseline " + baseline + ", requests "
+                + mServer.getRequestCount() + ", injected errors " + mServer.getErrorCount() + ")");
+
+        assertTrue(metric + " regressed: " + value + " exceeds the baseline " + baseline
+                + " by more than the tolerance", value <= limit);
+    }
+
+    private static void deleteFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static String readAsset(String name) throws IOException {
+        InputStream inputStream = InstrumentationRegistry.getContext().getAssets().open(name);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        return outputStream.toString("UTF-8");
+    }
+}
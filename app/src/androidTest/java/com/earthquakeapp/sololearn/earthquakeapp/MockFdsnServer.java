@@ -0,0 +1,318 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.net.Uri;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Local stand-in for the USGS FDSN event service. It serves the features of a GeoJSON response,
+// filtered, ordered and paged like the real service, with configurable latency, bandwidth and
+// injected errors.
+public class MockFdsnServer {
+
+    public static final String QUERY_PATH = "/fdsnws/event/1/query";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int CHUNK_SIZE = 1024;
+
+    private final List<Feature> mFeatures = new ArrayList<>();
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private ServerSocket mServerSocket;
+
+    private volatile long mLatencyMillis;
+    private volatile long mBytesPerSecond;
+    private volatile double mErrorRate;
+    private volatile double mDropRate;
+    private final Random mRandom = new Random(42);
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mErrorCount = new AtomicInteger();
+    private final AtomicLong mBytesTransferred = new AtomicLong();
+
+    public MockFdsnServer(String geoJson) throws JSONException {
+        JSONArray features = new JSONObject(geoJson).getJSONArray("features");
+
+        for (int i = 0; i < features.length(); i++) {
+            JSONObject feature = features.getJSONObject(i);
+            JSONObject properties = feature.getJSONObject("properties");
+            mFeatures.add(new Feature(properties.getDouble("mag"), properties.getLong("time"), feature.toString()));
+        }
+    }
+
+    // Delay before the response headers are sent
+    public void setLatency(long latencyMillis) {
+        mLatencyMillis = latencyMillis;
+    }
+
+    // Throttle the response body, 0 means unlimited
+    public void setBandwidth(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    // Fraction of the requests which get a 503 response, and which get their connection dropped
+    public void setErrorRates(double errorRate, double dropRate) {
+        mErrorRate = errorRate;
+        mDropRate = dropRate;
+    }
+
+    public void start() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (!mServerSocket.isClosed()) {
+                    try {
+                        final Socket socket = mServerSocket.accept();
+                        mExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                handle(socket);
+                            }
+                        });
+                    } catch (IOException e) {
+                        // The server socket was closed
+                    }
+                }
+            }
+        });
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    public String getQueryUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + QUERY_PATH;
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public int getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    // Bytes written to the clients, headers included
+    public long getBytesTransferred() {
+        return mBytesTransferred.get();
+    }
+
+    public void resetCounters() {
+        mRequestCount.set(0);
+        mErrorCount.set(0);
+        mBytesTransferred.set(0);
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            String requestLine = reader.readLine();
+
+            // Skip the request headers, GET requests have no body
+            String header = reader.readLine();
+            while (header != null && !header.isEmpty()) {
+                header = reader.readLine();
+            }
+
+            if (requestLine == null) {
+                return;
+            }
+
+            mRequestCount.incrementAndGet();
+            sleep(mLatencyMillis);
+
+            double roll;
+            synchronized (mRandom) {
+                roll = mRandom.nextDouble();
+            }
+
+            if (roll < mDropRate) {
+                mErrorCount.incrementAndGet();
+                return;
+            }
+
+            OutputStream outputStream = socket.getOutputStream();
+            String[] parts = requestLine.split(" ");
+            Uri uri = Uri.parse(parts.length > 1 ? parts[1] : "/");
+
+            if (roll < mDropRate + mErrorRate) {
+                mErrorCount.incrementAndGet();
+                write(outputStream, 503, "Service Unavailable");
+            } else if (!QUERY_PATH.equals(uri.getPath())) {
+                write(outputStream, 404, "Not Found");
+            } else {
+                String body;
+                try {
+                    body = query(uri);
+                } catch (IllegalArgumentException e) {
+                    write(outputStream, 400, "Bad Request");
+                    return;
+                }
+                write(outputStream, 200, body);
+            }
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+
+    // Answer the query with the same semantics as the FDSN event service
+    private String query(Uri uri) {
+        int offset = parseInt(uri.getQueryParameter("offset"), 1);
+        int limit = parseInt(uri.getQueryParameter("limit"), Integer.MAX_VALUE);
+        double minMagnitude = parseDouble(uri.getQueryParameter("minmag"), Double.NEGATIVE_INFINITY);
+        double maxMagnitude = parseDouble(uri.getQueryParameter("maxmagnitude"), Double.POSITIVE_INFINITY);
+        long startTime = parseTime(uri.getQueryParameter("starttime"), Long.MIN_VALUE);
+        long endTime = parseTime(uri.getQueryParameter("endtime"), Long.MAX_VALUE);
+        String orderBy = uri.getQueryParameter("orderby");
+
+        // All the bounds are inclusive
+        List<Feature> features = new ArrayList<>();
+        for (Feature feature : mFeatures) {
+            if (feature.magnitude >= minMagnitude && feature.magnitude <= maxMagnitude
+                    && feature.time >= startTime && feature.time <= endTime) {
+                features.add(feature);
+            }
+        }
+
+        Collections.sort(features, getComparator(orderBy));
+
+        // The offset of the FDSN service is 1-based
+        int from = Math.min(features.size(), Math.max(0, offset - 1));
+        int to = (int) Math.min(features.size(), (long) from + limit);
+
+        StringBuilder response = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                response.append(',');
+            }
+            response.append(features.get(i).json);
+        }
+        response.append("]}");
+
+        return response.toString();
+    }
+
+    private static Comparator<Feature> getComparator(String orderBy) {
+        if ("magnitude".equals(orderBy)) {
+            return new Comparator<Feature>() {
+                @Override
+                public int compare(Feature first, Feature second) {
+                    return Double.compare(second.magnitude, first.magnitude);
+                }
+            };
+        }
+
+        return new Comparator<Feature>() {
+            @Override
+            public int compare(Feature first, Feature second) {
+                return Long.compare(second.time, first.time);
+            }
+        };
+    }
+
+    private void write(OutputStream outputStream, int responseCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        String headers = "HTTP/1.1 " + responseCode + " " + (responseCode == 200 ? "OK" : "Error") + "\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: close\r\n\r\n";
+        byte[] headerBytes = headers.getBytes(UTF_8);
+
+        outputStream.write(headerBytes);
+        mBytesTransferred.addAndGet(headerBytes.length);
+
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, bytes.length - offset);
+            outputStream.write(bytes, offset, length);
+            mBytesTransferred.addAndGet(length);
+
+            long bytesPerSecond = mBytesPerSecond;
+            if (bytesPerSecond > 0) {
+                sleep(length * 1000L / bytesPerSecond);
+            }
+        }
+
+        outputStream.flush();
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    // The service takes ISO 8601 times in UTC, with or without the time of day
+    private static long parseTime(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+
+        String pattern = value.contains("T") ? "yyyy-MM-dd'T'HH:mm:ss.SSS" : "yyyy-MM-dd";
+        SimpleDateFormat timeFormat = new SimpleDateFormat(pattern, Locale.US);
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        try {
+            return timeFormat.parse(value).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Bad time: " + value, e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Feature {
+        final double magnitude;
+        final long time;
+        final String json;
+
+        Feature(double magnitude, long time, String json) {
+            this.magnitude = magnitude;
+            this.time = time;
+            this.json = json;
+        }
+    }
+}
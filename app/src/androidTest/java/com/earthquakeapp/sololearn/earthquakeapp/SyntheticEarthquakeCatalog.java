@@ -0,0 +1,148 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+// Generates a USGS style GeoJSON response for MockFdsnServer. The events are not real, but they
+// are shaped like the M4.5+ feed: magnitudes follow the Gutenberg-Richter law, and locations and
+// depths come from a handful of seismic regions. The same seed always gives the same catalog.
+public class SyntheticEarthquakeCatalog {
+
+    private static final String DETAILS_URL = "https://earthquake.usgs.gov/earthquakes/eventpage/";
+    private static final String[] DIRECTIONS = {"N", "NNE", "NE", "ENE", "E", "ESE", "SE", "SSE",
+            "S", "SSW", "SW", "WSW", "W", "WNW", "NW", "NNW"};
+
+    private static final Region[] REGIONS = {
+            new Region("Norcia, Italy", 42.79, 13.10, 0.4, 5, 20),
+            new Region("Acapulco, Mexico", 16.55, -99.90, 1.0, 10, 60),
+            new Region("Adak, Alaska", 51.60, -177.50, 1.5, 15, 120),
+            new Region("Levuka, Fiji", -17.90, -178.40, 1.2, 350, 650),
+            new Region("Hihifo, Tonga", -16.00, -173.80, 1.5, 10, 250),
+            new Region("Kushiro, Japan", 42.60, 144.00, 1.0, 10, 80),
+            new Region("Kokopo, Papua New Guinea", -5.20, 152.20, 1.2, 10, 100),
+            new Region("Padang, Indonesia", -1.20, 99.80, 1.5, 10, 60),
+            new Region("Coquimbo, Chile", -30.20, -71.80, 1.5, 20, 120),
+            new Region("Jurm, Afghanistan", 36.50, 70.80, 0.3, 180, 230),
+            new Region("Bandar Abbas, Iran", 27.60, 56.60, 1.0, 8, 30),
+            new Region("Lata, Solomon Islands", -10.70, 165.90, 1.0, 10, 70)
+    };
+
+    // Rate of the smaller events relative to the larger ones, about 1 for tectonic earthquakes
+    private static final double B_VALUE = 1.0;
+    private static final double MIN_MAGNITUDE = 4.5;
+    private static final double MAX_MAGNITUDE = 8.2;
+
+    private SyntheticEarthquakeCatalog() {
+    }
+
+    // Return count events spread evenly, newest first, over the days before endTimeMillis
+    public static String generate(int count, long endTimeMillis, int days, long seed) throws JSONException {
+        Random random = new Random(seed);
+        long spacing = days * 86400000L / count;
+        Set<String> codes = new HashSet<>();
+
+        JSONArray features = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            long time = endTimeMillis - i * spacing - (long) (random.nextDouble() * spacing);
+
+            String code;
+            do {
+                code = String.format(Locale.US, "1000%04x", random.nextInt(0x10000));
+            } while (!codes.add(code));
+
+            features.put(generateFeature(random, code, time));
+        }
+
+        JSONObject metadata = new JSONObject()
+                .put("generated", endTimeMillis)
+                .put("title", "Synthetic USGS Earthquakes")
+                .put("status", 200)
+                .put("count", count);
+
+        return new JSONObject()
+                .put("type", "FeatureCollection")
+                .put("metadata", metadata)
+                .put("features", features)
+                .toString();
+    }
+
+    private static JSONObject generateFeature(Random random, String code, long time) throws JSONException {
+        Region region = REGIONS[random.nextInt(REGIONS.length)];
+
+        // Inverse transform sampling of the Gutenberg-Richter distribution
+        double magnitude = MIN_MAGNITUDE - Math.log10(1 - random.nextDouble()) / B_VALUE;
+        magnitude = Math.round(Math.min(MAX_MAGNITUDE, magnitude) * 10) / 10.0;
+
+        double latitude = region.latitude + (random.nextDouble() * 2 - 1) * region.spread;
+        double longitude = region.longitude + (random.nextDouble() * 2 - 1) * region.spread;
+        if (longitude < -180) {
+            longitude += 360;
+        } else if (longitude > 180) {
+            longitude -= 360;
+        }
+        double depth = region.minDepth + random.nextDouble() * (region.maxDepth - region.minDepth);
+
+        String place = (5 + random.nextInt(200)) + "km " + DIRECTIONS[random.nextInt(DIRECTIONS.length)]
+                + " of " + region.place;
+        String magnitudeType = magnitude >= 5.5 ? "mww" : "mb";
+
+        JSONObject properties = new JSONObject()
+                .put("mag", magnitude)
+                .put("place", place)
+                .put("time", time)
+                .put("updated", time + (long) (random.nextDouble() * 30 * 86400000L))
+                .put("url", DETAILS_URL + "us" + code)
+                .put("status", "reviewed")
+                .put("tsunami", 0)
+                .put("sig", (int) Math.round(Math.pow(10, magnitude / 2.5) * 4))
+                .put("net", "us")
+                .put("code", code)
+                .put("ids", ",us" + code + ",")
+                .put("magType", magnitudeType)
+                .put("type", "earthquake")
+                .put("title", "M " + magnitude + " - " + place);
+
+        JSONObject geometry = new JSONObject()
+                .put("type", "Point")
+                .put("coordinates", new JSONArray()
+                        .put(round(longitude, 4))
+                        .put(round(latitude, 4))
+                        .put(round(depth, 2)));
+
+        return new JSONObject()
+                .put("type", "Feature")
+                .put("properties", properties)
+                .put("geometry", geometry)
+                .put("id", "us" + code);
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+
+    private static class Region {
+        final String place;
+        final double latitude;
+        final double longitude;
+        // Half width of the box around the center in degrees
+        final double spread;
+        final double minDepth;
+        final double maxDepth;
+
+        Region(String place, double latitude, double longitude, double spread, double minDepth, double maxDepth) {
+            this.place = place;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.spread = spread;
+            this.minDepth = minDepth;
+            this.maxDepth = maxDepth;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The grid cells of a single zoom level, it does not use any Android classes so that
+// the cell assignment can be tested on the JVM
+class ClusterGrid {
+
+    // Size of a single map tile in pixels, the whole world at zoom 0 fits in one tile
+    private static final int TILE_SIZE = 256;
+
+    private final int mCellSize;
+    private final double mWorldSize;
+
+    // Number of cells in a row and in a column of the grid
+    private final long mCellCount;
+
+    private final Map<Long, EarthquakeClusterer.Cluster> mClusters = new HashMap<>();
+
+    ClusterGrid(int zoom, int cellSize) {
+        mCellSize = cellSize;
+        mWorldSize = (double) TILE_SIZE * (1L << zoom);
+        mCellCount = (long) Math.ceil(mWorldSize / cellSize);
+    }
+
+    void add(List<Earthquake> earthquakes) {
+        for (Earthquake earthquake : earthquakes) {
+            long key = getCellKey(earthquake.getLatitude(), earthquake.getLongitude());
+
+            EarthquakeClusterer.Cluster cluster = mClusters.get(key);
+            if (cluster == null) {
+                cluster = new EarthquakeClusterer.Cluster();
+                mClusters.put(key, cluster);
+            }
+            cluster.add(earthquake);
+        }
+    }
+
+    void clear() {
+        mClusters.clear();
+    }
+
+    int size() {
+        return mClusters.size();
+    }
+
+    Collection<EarthquakeClusterer.Cluster> getClusters() {
+        return mClusters.values();
+    }
+
+    long getCellCount() {
+        return mCellCount;
+    }
+
+    long getCellKey(double latitude, double longitude) {
+        return (getCellX(longitude) << 32) | getCellY(latitude);
+    }
+
+    long getCellX(double longitude) {
+        // 180 and -180 are the same meridian, the world wraps around instead of getting another column
+        double x = projectX(longitude, mWorldSize) % mWorldSize;
+        if (x < 0) {
+            x += mWorldSize;
+        }
+        return clampCell((long) (x / mCellSize));
+    }
+
+    long getCellY(double latitude) {
+        return clampCell((long) Math.floor(projectY(latitude, mWorldSize) / mCellSize));
+    }
+
+    // Keep the rounding at the edges of the world inside the grid
+    private long clampCell(long cell) {
+        return Math.max(0, Math.min(mCellCount - 1, cell));
+    }
+
+    // Web Mercator projection, the same one which is used by the map tiles
+    private static double projectX(double longitude, double worldSize) {
+        return (longitude + 180) / 360 * worldSize;
+    }
+
+    private static double projectY(double latitude, double worldSize) {
+        // Clamp the latitude, the projection goes to infinity at the poles
+        double sinLatitude = Math.sin(Math.toRadians(latitude));
+        sinLatitude = Math.max(-0.9999, Math.min(0.9999, sinLatitude));
+
+        return (0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI)) * worldSize;
+    }
+}
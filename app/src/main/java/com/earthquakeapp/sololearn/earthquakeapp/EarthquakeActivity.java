@@ -1,14 +1,12 @@
 package com.earthquakeapp.sololearn.earthquakeapp;
 
-import android.app.LoaderManager;
+import android.app.DatePickerDialog;
+import android.app.FragmentManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
-import android.os.Handler;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v4.content.ContextCompat;
@@ -17,23 +15,46 @@ import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
+import android.widget.DatePicker;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-public class EarthquakeActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Earthquake>> {
+public class EarthquakeActivity extends AppCompatActivity implements EarthquakePipeline.Listener,
+        SharedPreferences.OnSharedPreferenceChangeListener {
 
-    private static final String EARTHQUAKE_REQUEST_URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+    // Lets debug builds query a local stand-in of the USGS service instead, used by the performance tests
+    public static final String EXTRA_REQUEST_URL = "com.earthquakeapp.sololearn.earthquakeapp.EXTRA_REQUEST_URL";
 
-    private static final int EARTHQUAKE_LOADER_ID = 1;
+    private static final int PAGE_SIZE = 20;
 
-    private int mOffset = 1;
+    // A jump to a date fetches the missing time window in chunks of this size
+    private static final int JUMP_WINDOW_LIMIT = 500;
+
+    // Repeated queries, i.e. after toggling a setting back, are served from this cache
+    private static final String RESPONSE_CACHE_DIRECTORY = "responses";
+    private static final long RESPONSE_CACHE_MAX_BYTES = 4 * 1024 * 1024;
+
+    private String mRequestUrl = FdsnEarthquakeSource.USGS_URL;
+
+    // Retained across configuration changes, holds the pipeline, the listed earthquakes and the cursor
+    private PipelineFragment mState;
+
+    private EarthquakePipeline mPipeline;
+
+    private LinearLayoutManager mLayoutManager;
 
     private EarthquakeAdapter mAdapter;
 
@@ -41,21 +62,55 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
 
     private SwipeRefreshLayout mSwipeRefreshLayout;
 
+    // Only created in debug builds
+    private ScrollPerformanceMonitor mPerformanceMonitor;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_earthquake);
 
+        String requestUrl = getIntent().getStringExtra(EXTRA_REQUEST_URL);
+        if (BuildConfig.DEBUG && requestUrl != null) {
+            mRequestUrl = requestUrl;
+        }
+
+        if (QueryUtils.getResponseCache() == null) {
+            QueryUtils.setResponseCache(new ResponseCache(
+                    new File(getCacheDir(), RESPONSE_CACHE_DIRECTORY), RESPONSE_CACHE_MAX_BYTES));
+        }
+
+        FragmentManager fragmentManager = getFragmentManager();
+        mState = (PipelineFragment) fragmentManager.findFragmentByTag(PipelineFragment.TAG);
+        boolean restored = mState != null;
+
+        if (!restored) {
+            mState = new PipelineFragment();
+            mState.setPipeline(new EarthquakePipeline(new EarthquakeFormatter(this), buildCatalog(),
+                    new MainThreadExecutor()));
+            mState.setCursor(PageCursor.first(getOrderBy()));
+            fragmentManager.beginTransaction().add(mState, PipelineFragment.TAG).commit();
+        }
+
+        mPipeline = mState.getPipeline();
+
         RecyclerView earthquakeRecyclerView = findViewById(R.id.earthquake_recycler_view);
 
         mEmptyStateTextView = findViewById(R.id.empty_view);
 
-        mAdapter = new EarthquakeAdapter(this, new ArrayList<Earthquake>());
+        mAdapter = new EarthquakeAdapter(this, mState.getEarthquakes());
 
         earthquakeRecyclerView.setAdapter(mAdapter);
         LinearLayoutManager linearLayoutManager = new LinearLayoutManager(this, LinearLayoutManager.VERTICAL, false);
         linearLayoutManager.setSmoothScrollbarEnabled(true);
         earthquakeRecyclerView.setLayoutManager(linearLayoutManager);
+        mLayoutManager = linearLayoutManager;
+
+        if (BuildConfig.DEBUG) {
+            mPerformanceMonitor = new ScrollPerformanceMonitor(getWindowManager().getDefaultDisplay().getRefreshRate());
+            mPerformanceMonitor.attach(earthquakeRecyclerView);
+            mAdapter.setPerformanceMonitor(mPerformanceMonitor);
+        }
 
         // Get reference to the ConnectivityManager to check state of network connectivity
         ConnectivityManager connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
@@ -64,12 +119,18 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
         final NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
 
         // If there is a network connection, get data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager to interact with loaders
-            LoaderManager loaderManager = getLoaderManager();
-
-            // Initialize the loader
-            loaderManager.initLoader(EARTHQUAKE_LOADER_ID, null, this);
+        if (restored) {
+            // The pipeline kept loading while the activity was recreated
+            if (mAdapter.getEarthquakeCount() > 0 || !mPipeline.isLoading()) {
+                View loadingIndicator = findViewById(R.id.loading_indicator);
+                loadingIndicator.setVisibility(View.GONE);
+                mEmptyStateTextView.setText("No earthquakes found.");
+            }
+            if (mAdapter.getEarthquakeCount() > 0) {
+                mEmptyStateTextView.setVisibility(View.GONE);
+            }
+        } else if (networkInfo != null && networkInfo.isConnected()) {
+            startLoading(mState.getCursor(), false, false, -1);
         } else {
             // Hide the loading indicator so error message will be visible
             View loadingIndicator = findViewById(R.id.loading_indicator);
@@ -93,85 +154,213 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
                 LoadMoreData();
             }
         });
+
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(this);
+
+        // Pages which were delivered during a configuration change arrive now
+        mPipeline.setListener(this);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (getString(R.string.settings_regional_catalog_key).equals(key)) {
+            mPipeline.setCatalog(buildCatalog());
+        }
+
+        // The query changed, so the listed earthquakes no longer apply. Recently seen queries
+        // are answered from the response cache.
+        mAdapter.clearEarthquakesList();
+        mState.setCursor(PageCursor.first(getOrderBy()));
+        mState.clearJump();
+
+        startLoading(mState.getCursor(), false, false, -1);
+    }
+
+    private MultiSourceCatalog buildCatalog() {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+
+        List<EarthquakeSource> sources = new ArrayList<>();
+        sources.add(new FdsnEarthquakeSource("USGS", mRequestUrl));
+
+        // The first source wins when both list the same earthquake
+        if (sharedPreferences.getBoolean(getString(R.string.settings_regional_catalog_key), false)) {
+            sources.add(new EmscEarthquakeSource(EmscEarthquakeSource.EMSC_URL));
+        }
+
+        return new MultiSourceCatalog(sources);
+    }
+
+    private String getOrderBy() {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+
+        return sharedPreferences.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default)
+        );
     }
 
     private void ReloadPage() {
-        LoaderManager loaderManager = getLoaderManager();
-        loaderManager.restartLoader(EARTHQUAKE_LOADER_ID, null, this);
+        mState.clearJump();
+
+        // The first page replaces the list, unless it only revises listed earthquakes
+        startLoading(PageCursor.first(getOrderBy()), true, true, -1);
     }
 
     private void LoadMoreData() {
         mAdapter.showLoading(true);
-        mOffset += 20;
-        LoaderManager loaderManager = getLoaderManager();
-        loaderManager.restartLoader(EARTHQUAKE_LOADER_ID, null, this);
+
+        // The pipeline has usually fetched the next page already
+        if (mPipeline.isLoading()) {
+            mPipeline.requestPage();
+        } else {
+            startLoading(mState.getCursor(), false, false, -1);
+        }
     }
 
-    @Override
-    public Loader<List<Earthquake>> onCreateLoader(int id, Bundle args) {
+    // Start a loading session at the cursor, windowStart is -1 unless the time window of a jump is fetched
+    private void startLoading(PageCursor cursor, boolean forceRefresh, boolean replaceList, long windowStart) {
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
 
         String minMagnitude = sharedPreferences.getString(
                 getString(R.string.settings_min_magnitude_key),
                 getString(R.string.settings_min_magnitude_default)
         );
-        String orderBy = sharedPreferences.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default)
-        );
 
-        Uri baseUri = Uri.parse(EARTHQUAKE_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("minmag", minMagnitude);
 
-        uriBuilder.appendQueryParameter("format", "geojson");
-        uriBuilder.appendQueryParameter("offset", Integer.toString(mOffset));
-        uriBuilder.appendQueryParameter("limit", "20");
-        uriBuilder.appendQueryParameter("minmag", minMagnitude);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
+        int pageSize = PAGE_SIZE;
+        if (windowStart != -1) {
+            parameters.put("starttime", PageCursor.formatTime(windowStart));
+            pageSize = JUMP_WINDOW_LIMIT;
+        }
 
-        return new EarthquakeLoader(this, uriBuilder.toString());
+        mPipeline.start(cursor, parameters, pageSize, forceRefresh, mAdapter.getRevisions(), replaceList);
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Earthquake>> loader, List<Earthquake> earthquakes) {
+    public void onPageDelivered(EarthquakePipeline.Page page) {
         // Hide the loading indicator as the data has been loaded
         View loadingIndicator = findViewById(R.id.loading_indicator);
         loadingIndicator.setVisibility(View.GONE);
 
         mEmptyStateTextView.setText("No earthquakes found.");
 
-        if (mOffset == 1) {
-            // Clear the adapter of previous earthquake data
+        // Stop the refresh animation if not already stopped
+        if (mSwipeRefreshLayout.isRefreshing()) {
+            mSwipeRefreshLayout.setRefreshing(false);
+        }
+
+        mAdapter.showLoading(false);
+
+        if (page.isFailed()) {
+            mState.clearJump();
+            return;
+        }
+
+        // The diff stage already dropped the listed earthquakes and picked the revised ones
+        if (page.replacesList()) {
             mAdapter.clearEarthquakesList();
         }
+        mAdapter.applyRevisions(page.getRevisedRows());
+        mAdapter.addEarthquakes(page.getInsertedRows());
 
-        // If there is a valid list of Earthquakes list, then add them to the adapter's data set
-        //  which will trigger the ListView to update
-        if (earthquakes != null && !earthquakes.isEmpty()) {
-            mAdapter.addEarthquakes(earthquakes);
+        if (page.getIndex() == 0 && page.getSession().mayReplaceList() && !page.replacesList()) {
+            // The refresh only revised listed earthquakes, so paging goes on where it was
+            mPipeline.cancel();
+        } else {
+            mState.setCursor(page.getNextCursor());
+        }
 
-            TextView emptyTextView = findViewById(R.id.empty_view);
-            emptyTextView.setVisibility(View.GONE);
+        if (mAdapter.getEarthquakeCount() > 0) {
+            mEmptyStateTextView.setVisibility(View.GONE);
         }
 
-        // Stop the refresh animation if not already stopped
-        if (mSwipeRefreshLayout.isRefreshing()) {
-            mSwipeRefreshLayout.setRefreshing(false);
-            mOffset = 1;
+        if (mState.isJumping()) {
+            // Keep fetching while the window was too large for a single page
+            if (!page.isLast() && !isDayListed(mState.getJumpDayStart())) {
+                mAdapter.showLoading(true);
+                mPipeline.requestPage();
+            } else {
+                // The rest of the window is not needed, paging goes on without its start time
+                mPipeline.cancel();
+                scrollToTime(mState.getJumpDayEnd());
+                mState.clearJump();
+            }
+        } else if (page.getInsertedRows().isEmpty() && !page.isLast() && mPipeline.isLoading()) {
+            // The list did not grow, so the scroll listener would not ask for more
+            mPipeline.requestPage();
         }
+    }
 
-        mAdapter.showLoading(false);
+    private void showJumpToDateDialog() {
+        if (!PageCursor.ORDER_BY_TIME.equals(mState.getCursor().getOrderBy())) {
+            Toast.makeText(this, R.string.jump_to_date_needs_time_order, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        Calendar today = Calendar.getInstance();
+        DatePickerDialog dialog = new DatePickerDialog(this, new DatePickerDialog.OnDateSetListener() {
+            @Override
+            public void onDateSet(DatePicker view, int year, int month, int dayOfMonth) {
+                Calendar day = Calendar.getInstance();
+                day.clear();
+                day.set(year, month, dayOfMonth);
+                long dayStart = day.getTimeInMillis();
+                day.add(Calendar.DAY_OF_MONTH, 1);
+
+                jumpToDate(dayStart, day.getTimeInMillis() - 1);
+            }
+        }, today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+
+        dialog.getDatePicker().setMaxDate(today.getTimeInMillis());
+        dialog.show();
+    }
+
+    // Scroll to the given day, only the window between the oldest listed earthquake and the day is fetched
+    private void jumpToDate(long dayStart, long dayEnd) {
+        if (isDayListed(dayStart)) {
+            scrollToTime(dayEnd);
+            return;
+        }
+
+        mState.setJump(dayStart, dayEnd);
+        mAdapter.showLoading(true);
+        startLoading(mState.getCursor(), false, false, dayStart);
+    }
+
+    // The listed earthquakes cover the day if one of them is older than it
+    private boolean isDayListed(long dayStart) {
+        return mAdapter.findPositionByTime(dayStart - 1) < mAdapter.getEarthquakeCount();
+    }
+
+    private void scrollToTime(long timeInMilliseconds) {
+        int count = mAdapter.getEarthquakeCount();
+        if (count == 0) {
+            return;
+        }
+
+        int position = Math.min(mAdapter.findPositionByTime(timeInMilliseconds), count - 1);
+        mLayoutManager.scrollToPositionWithOffset(position, 0);
     }
 
     @Override
-    public void onLoaderReset(Loader<List<Earthquake>> loader) {
-        mAdapter.clearEarthquakesList();
-        mOffset = 1;
+    protected void onDestroy() {
+        super.onDestroy();
+
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(this);
+        // The retained pipeline holds the pages until the recreated activity listens again
+        mPipeline.setListener(null);
+
+        if (mPerformanceMonitor != null) {
+            mPerformanceMonitor.detach();
+        }
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+        menu.findItem(R.id.action_export_performance_report).setVisible(mPerformanceMonitor != null);
         return true;
     }
 
@@ -185,6 +374,32 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
             return true;
         }
 
+        if (id == R.id.action_jump_to_date) {
+            showJumpToDateDialog();
+            return true;
+        }
+
+        if (id == R.id.action_export_performance_report) {
+            exportPerformanceReport();
+            return true;
+        }
+
         return super.onOptionsItemSelected(item);
     }
+
+    // Share the scroll and network performance report, i.e. to a mail or a notes app
+    private void exportPerformanceReport() {
+        String report = mPerformanceMonitor.buildReport()
+                + "Requests\n  " + QueryUtils.getRequestStats() + "\n"
+                + "Sources\n  " + mPipeline.getCatalog().getStats().toString().replace("\n", "\n  ") + "\n"
+                + "Pipeline\n  " + TextUtils.join("\n  ", mPipeline.getStats()) + "\n"
+                + "Response cache\n  " + QueryUtils.getResponseCache().getStats() + "\n";
+
+        Intent shareIntent = new Intent(Intent.ACTION_SEND);
+        shareIntent.setType("text/plain");
+        shareIntent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.performance_report_subject));
+        shareIntent.putExtra(Intent.EXTRA_TEXT, report);
+
+        startActivity(Intent.createChooser(shareIntent, getString(R.string.export_performance_report_menu_item)));
+    }
 }
@@ -7,34 +7,52 @@ import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.constraint.ConstraintLayout;
-import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.RecyclerView;
-import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class EarthquakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
-    private List<Earthquake> mEarthquakes;
+    // Rows are formatted by the loading pipeline, binding only sets the texts
+    private List<EarthquakeRow> mEarthquakes;
     private Context context;
 
-    private static final String LOCATION_SEPARATOR = " of ";
+    // Position of every listed earthquake by its event id
+    private Map<String, Integer> mPositions = new HashMap<>();
+    // Stable item ids handed out to event ids, so a revised event keeps its row
+    private Map<String, Long> mItemIds = new HashMap<>();
+    private long mNextItemId = 0;
+
+    // Only set in debug builds, records create and bind timings
+    private ScrollPerformanceMonitor mPerformanceMonitor;
 
     private boolean showLoader = false;
     private static final int VIEWTYPE_ITEM = 1;
     private static final int VIEWTYPE_LOADER = 2;
 
-    public EarthquakeAdapter(Context context, List<Earthquake> earthquakes) {
+    private static final long LOADER_ITEM_ID = Long.MAX_VALUE;
+
+    // Change payloads, so that a revision only rebinds the views whose data changed
+    private static final int CHANGE_MAGNITUDE = 1;
+    private static final int CHANGE_LOCATION = 1 << 1;
+    private static final int CHANGE_TIME = 1 << 2;
+
+    public EarthquakeAdapter(Context context, List<EarthquakeRow> earthquakes) {
         mEarthquakes = earthquakes;
         this.context = context;
+
+        for (int i = 0; i < mEarthquakes.size(); i++) {
+            mPositions.put(mEarthquakes.get(i).getId(), i);
+        }
+
+        setHasStableIds(true);
     }
 
     @Override
@@ -53,22 +71,42 @@ public class EarthquakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
         // Loader cannot be at position 0, only at the last position
         if (position != 0 && position == getItemCount() - 1) {
-            // id of the loader is considered as -1 here
-            return -1;
+            return LOADER_ITEM_ID;
         }
 
-        return position; // getYourItemId(position)
+        String id = mEarthquakes.get(position).getId();
+        Long itemId = mItemIds.get(id);
+        if (itemId == null) {
+            itemId = mNextItemId++;
+            mItemIds.put(id, itemId);
+        }
+
+        return itemId;
     }
 
     public void showLoading(boolean status) {
         showLoader = status;
     }
 
+    public void setPerformanceMonitor(ScrollPerformanceMonitor performanceMonitor) {
+        mPerformanceMonitor = performanceMonitor;
+    }
+
     @NonNull
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
+        if (mPerformanceMonitor == null) {
+            return inflateViewHolder(viewGroup, viewType);
+        }
+
+        long start = System.nanoTime();
+        RecyclerView.ViewHolder viewHolder = inflateViewHolder(viewGroup, viewType);
+        mPerformanceMonitor.onViewHolderCreated(viewType, System.nanoTime() - start);
 
-        RecyclerView.ViewHolder viewHolder = null;
+        return viewHolder;
+    }
+
+    private RecyclerView.ViewHolder inflateViewHolder(ViewGroup viewGroup, int viewType) {
         if (viewType == VIEWTYPE_LOADER) {
             View view = LayoutInflater.from(viewGroup.getContext()).inflate(R.layout.loader_lits_item, viewGroup, false);
             return new LoaderViewHolder(view);
@@ -90,10 +128,19 @@ public class EarthquakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         return VIEWTYPE_ITEM;
     }
 
-    @NonNull
     @Override
-    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder  viewHolder, final int position) {
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder viewHolder, int position) {
+        if (mPerformanceMonitor == null) {
+            bindRow(viewHolder, position);
+            return;
+        }
 
+        long start = System.nanoTime();
+        bindRow(viewHolder, position);
+        mPerformanceMonitor.onViewHolderBound(viewHolder.getItemViewType(), position, System.nanoTime() - start, false);
+    }
+
+    private void bindRow(RecyclerView.ViewHolder viewHolder, int position) {
         if (viewHolder instanceof LoaderViewHolder) {
             LoaderViewHolder loaderViewHolder = (LoaderViewHolder) viewHolder;
 
@@ -108,46 +155,65 @@ public class EarthquakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
         if (viewHolder instanceof ItemViewHolder) {
             ItemViewHolder itemViewHolder = (ItemViewHolder) viewHolder;
+            EarthquakeRow earthquake = mEarthquakes.get(position);
 
-            String magnitude = formatMagnitude(mEarthquakes.get(position).getMagnitude());
-            itemViewHolder.magnitude.setText(magnitude);
+            bindMagnitude(itemViewHolder, earthquake);
+            bindLocation(itemViewHolder, earthquake);
+            bindTime(itemViewHolder, earthquake);
+        }
+    }
 
-            // Set the proper background color on the magnitude circle
-            // Fetch the background from the TextView, which is a GradientDrawable
-            GradientDrawable magnitudeCircle = (GradientDrawable) itemViewHolder.magnitude.getBackground();
-            // Get the appropriate background color based on the current earthquake magnitude
-            int magnitudeColor = getMagnitudeColor(magnitude);
-            // Set the color on the magnitude circle
-            magnitudeCircle.setColor(magnitudeColor);
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder viewHolder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !(viewHolder instanceof ItemViewHolder)) {
+            onBindViewHolder(viewHolder, position);
+            return;
+        }
 
-            Pair<String, String> locationPair = getLocationPair(mEarthquakes.get(position).getLocation());
-            itemViewHolder.nearLocation.setText(locationPair.first);
-            itemViewHolder.location.setText(locationPair.second);
+        long start = System.nanoTime();
 
-            Date dateObject = new Date(mEarthquakes.get(position).getDateInMilliseconds());
-            String formattedDate = formatDate(dateObject);
-            String formattedTime = formatTime(dateObject);
+        // Several revisions may arrive before the row is rebound, so merge their changes
+        int changes = 0;
+        for (Object payload : payloads) {
+            changes |= (Integer) payload;
+        }
 
-            itemViewHolder.date.setText(formattedDate);
-            itemViewHolder.time.setText(formattedTime);
+        ItemViewHolder itemViewHolder = (ItemViewHolder) viewHolder;
+        EarthquakeRow earthquake = mEarthquakes.get(position);
 
-            itemViewHolder.parentLayout.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    // Find the current earthquake that was clicked on
-                    Earthquake currentEarthquake = mEarthquakes.get(position);
+        if ((changes & CHANGE_MAGNITUDE) != 0) {
+            bindMagnitude(itemViewHolder, earthquake);
+        }
+        if ((changes & CHANGE_LOCATION) != 0) {
+            bindLocation(itemViewHolder, earthquake);
+        }
+        if ((changes & CHANGE_TIME) != 0) {
+            bindTime(itemViewHolder, earthquake);
+        }
 
-                    // Convert the String URL into a URI object
-                    Uri earthquakeUri = Uri.parse(currentEarthquake.getDetailsUrl());
+        if (mPerformanceMonitor != null) {
+            mPerformanceMonitor.onViewHolderBound(VIEWTYPE_ITEM, position, System.nanoTime() - start, true);
+        }
+    }
 
-                    // Create a new intent to view the earthquake URI
-                    Intent websiteIntent = new Intent(Intent.ACTION_VIEW, earthquakeUri);
+    private void bindMagnitude(ItemViewHolder itemViewHolder, EarthquakeRow earthquake) {
+        itemViewHolder.magnitude.setText(earthquake.getMagnitude());
 
-                    // Send the intent to launch a new activity
-                    context.startActivity(websiteIntent);
-                }
-            });
-        }
+        // Set the proper background color on the magnitude circle
+        // Fetch the background from the TextView, which is a GradientDrawable
+        GradientDrawable magnitudeCircle = (GradientDrawable) itemViewHolder.magnitude.getBackground();
+        // Set the color on the magnitude circle
+        magnitudeCircle.setColor(earthquake.getMagnitudeColor());
+    }
+
+    private void bindLocation(ItemViewHolder itemViewHolder, EarthquakeRow earthquake) {
+        itemViewHolder.nearLocation.setText(earthquake.getNearLocation());
+        itemViewHolder.location.setText(earthquake.getLocation());
+    }
+
+    private void bindTime(ItemViewHolder itemViewHolder, EarthquakeRow earthquake) {
+        itemViewHolder.date.setText(earthquake.getDate());
+        itemViewHolder.time.setText(earthquake.getTime());
     }
 
     public class ItemViewHolder extends RecyclerView.ViewHolder {
@@ -166,6 +232,28 @@ public class EarthquakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             date = itemView.findViewById(R.id.date);
             time = itemView.findViewById(R.id.time);
             parentLayout = itemView.findViewById(R.id.parent_layout);
+
+            parentLayout.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    int position = getAdapterPosition();
+                    if (position == RecyclerView.NO_POSITION) {
+                        return;
+                    }
+
+                    // Find the current earthquake that was clicked on
+                    Earthquake currentEarthquake = mEarthquakes.get(position).getEarthquake();
+
+                    // Convert the String URL into a URI object
+                    Uri earthquakeUri = Uri.parse(currentEarthquake.getDetailsUrl());
+
+                    // Create a new intent to view the earthquake URI
+                    Intent websiteIntent = new Intent(Intent.ACTION_VIEW, earthquakeUri);
+
+                    // Send the intent to launch a new activity
+                    context.startActivity(websiteIntent);
+                }
+            });
         }
     }
 
@@ -178,91 +266,95 @@ public class EarthquakeAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         }
     }
 
-    public void addEarthquakes(List<Earthquake> earthquakes) {
-        mEarthquakes.addAll(earthquakes);
-        notifyItemRangeInserted(mEarthquakes.size() - 1, earthquakes.size());
-    }
+    // Append rows of earthquakes which are not listed yet, the loading pipeline already dropped the listed ones
+    public void addEarthquakes(List<EarthquakeRow> earthquakes) {
+        int start = mEarthquakes.size();
 
-    public void clearEarthquakesList() {
-        mEarthquakes.clear();
-        notifyDataSetChanged();
-    }
+        for (EarthquakeRow earthquake : earthquakes) {
+            mPositions.put(earthquake.getId(), mEarthquakes.size());
+            mEarthquakes.add(earthquake);
+        }
 
-    // Return the formatted date string (i.e. "Mar 3, 1984") from a Date object.
-    private String formatDate(Date dateObject) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("LLL dd, yyyy");
+        if (earthquakes.isEmpty()) {
+            return;
+        }
 
-        return dateFormat.format(dateObject);
+        // The loader row appears together with the first earthquakes
+        notifyItemRangeInserted(start, start == 0 ? earthquakes.size() + 1 : earthquakes.size());
     }
 
-    // Return the formatted date string (i.e. "4:30 PM") from a Date object.
-    private String formatTime(Date dateObject) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a");
-
-        return timeFormat.format(dateObject);
+    // Replace the rows of revised earthquakes, only the views whose text changed are rebound
+    public void applyRevisions(List<EarthquakeRow> earthquakes) {
+        for (EarthquakeRow earthquake : earthquakes) {
+            Integer position = mPositions.get(earthquake.getId());
+            if (position != null) {
+                applyRevision(position, earthquake);
+            }
+        }
     }
 
-    private String formatMagnitude(double magnitude) {
-        DecimalFormat magnitudeFormat = new DecimalFormat("0.0");
+    private void applyRevision(int position, EarthquakeRow earthquake) {
+        EarthquakeRow current = mEarthquakes.get(position);
+        if (!earthquake.getEarthquake().isRevisionOf(current.getEarthquake())) {
+            return;
+        }
+
+        mEarthquakes.set(position, earthquake);
+
+        int changes = 0;
+        if (!earthquake.getMagnitude().equals(current.getMagnitude())) {
+            changes |= CHANGE_MAGNITUDE;
+        }
+        if (!earthquake.getNearLocation().equals(current.getNearLocation())
+                || !earthquake.getLocation().equals(current.getLocation())) {
+            changes |= CHANGE_LOCATION;
+        }
+        if (!earthquake.getDate().equals(current.getDate()) || !earthquake.getTime().equals(current.getTime())) {
+            changes |= CHANGE_TIME;
+        }
 
-        return magnitudeFormat.format(magnitude);
+        // Revisions of fields which are not displayed, like the coordinates, need no rebind
+        if (changes != 0) {
+            notifyItemChanged(position, changes);
+        }
     }
 
-    private Pair<String, String> getLocationPair(String data) {
-        String nearLocation;
-        String mainLocation;
-
-        if (data.contains(LOCATION_SEPARATOR)) {
-            String[] parts = data.split(LOCATION_SEPARATOR);
-            nearLocation = parts[0] + " Near Of";
-            mainLocation = parts[1];
-        } else {
-            nearLocation = context.getString(R.string.near_the);
-            mainLocation = data;
+    // Return the update time of every listed earthquake by its id, for the diff stage of the loading pipeline
+    public Map<String, Long> getRevisions() {
+        Map<String, Long> revisions = new HashMap<>(mEarthquakes.size() * 2);
+        for (EarthquakeRow earthquake : mEarthquakes) {
+            revisions.put(earthquake.getId(), earthquake.getEarthquake().getUpdatedInMilliseconds());
         }
+        return revisions;
+    }
 
-        return Pair.create(nearLocation, mainLocation);
+    public int getEarthquakeCount() {
+        return mEarthquakes.size();
     }
 
-    private int getMagnitudeColor(String magnitudeString) {
-        double magnitude = Double.parseDouble(magnitudeString);
-        int magnitudeColorResourceId;
-        int magnitudeFloor = (int) Math.floor(magnitude);
-
-        switch (magnitudeFloor) {
-            case 0:
-            case 1:
-                magnitudeColorResourceId = R.color.magnitude1;
-                break;
-            case 2:
-                magnitudeColorResourceId = R.color.magnitude2;
-                break;
-            case 3:
-                magnitudeColorResourceId = R.color.magnitude3;
-                break;
-            case 4:
-                magnitudeColorResourceId = R.color.magnitude4;
-                break;
-            case 5:
-                magnitudeColorResourceId = R.color.magnitude5;
-                break;
-            case 6:
-                magnitudeColorResourceId = R.color.magnitude6;
-                break;
-            case 7:
-                magnitudeColorResourceId = R.color.magnitude7;
-                break;
-            case 8:
-                magnitudeColorResourceId = R.color.magnitude8;
-                break;
-            case 9:
-                magnitudeColorResourceId = R.color.magnitude9;
-                break;
-            default:
-                magnitudeColorResourceId = R.color.magnitude10plus;
-                break;
+    // Binary search the listed earthquakes, which must be ordered by time with the newest first, for the
+    // position of the first one at or before the given time. Returns the count if all of them are newer.
+    public int findPositionByTime(long timeInMilliseconds) {
+        int low = 0;
+        int high = mEarthquakes.size();
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mEarthquakes.get(middle).getEarthquake().getDateInMilliseconds() > timeInMilliseconds) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
 
-        return ContextCompat.getColor(context, magnitudeColorResourceId);
+        return low;
+    }
+
+    public void clearEarthquakesList() {
+        mEarthquakes.clear();
+        mPositions.clear();
+        // Item ids keep counting up, so a row of the new list never reuses the id of a removed one
+        mItemIds.clear();
+        notifyDataSetChanged();
     }
 }
@@ -0,0 +1,267 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Groups earthquakes into zoom-level grid cells on a background thread, so that a map
+// only has to draw one marker per cell instead of one marker per earthquake
+public class EarthquakeClusterer {
+
+    public static final int MIN_ZOOM = 0;
+    public static final int MAX_ZOOM = 21;
+
+    private static final int DEFAULT_CELL_SIZE = 64;
+
+    public interface OnClustersReadyListener {
+        // Called on the main thread with the clusters of the current zoom level
+        void onClustersReady(int zoom, List<Cluster> clusters, long clusteringTimeNanos);
+    }
+
+    private final int mCellSize;
+    private final OnClustersReadyListener mListener;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Only accessed from the clustering thread
+    private final List<Earthquake> mEarthquakes = new ArrayList<>();
+    private final SparseArray<ClusterGrid> mGrids = new SparseArray<>();
+
+    // Accessed from both threads, guarded by itself
+    private final SparseArray<ZoomTiming> mTimings = new SparseArray<>();
+
+    private volatile int mZoom = MIN_ZOOM;
+
+    public EarthquakeClusterer(OnClustersReadyListener listener) {
+        this(DEFAULT_CELL_SIZE, listener);
+    }
+
+    public EarthquakeClusterer(int cellSize, OnClustersReadyListener listener) {
+        mCellSize = cellSize;
+        mListener = listener;
+    }
+
+    // Switch to another zoom level, grids which were already built are reused
+    public void setZoom(int zoom) {
+        final int newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        mZoom = newZoom;
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The user already zoomed somewhere else, there is no point in clustering this level
+                if (newZoom != mZoom) {
+                    return;
+                }
+
+                long start = System.nanoTime();
+                ClusterGrid grid = mGrids.get(newZoom);
+                if (grid == null) {
+                    grid = buildGrid(newZoom, mEarthquakes);
+                    mGrids.put(newZoom, grid);
+                    recordTiming(newZoom, System.nanoTime() - start, false);
+                }
+
+                deliver(newZoom, grid.getClusters(), System.nanoTime() - start);
+            }
+        });
+    }
+
+    // Add newly loaded earthquakes, only the new ones are clustered into the existing grids
+    public void addEarthquakes(List<Earthquake> earthquakes) {
+        final List<Earthquake> newEarthquakes = new ArrayList<>(earthquakes.size());
+        for (Earthquake earthquake : earthquakes) {
+            if (earthquake.hasCoordinates()) {
+                newEarthquakes.add(earthquake);
+            }
+        }
+
+        if (newEarthquakes.isEmpty()) {
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mEarthquakes.addAll(newEarthquakes);
+
+                for (int i = 0; i < mGrids.size(); i++) {
+                    int zoom = mGrids.keyAt(i);
+                    long start = System.nanoTime();
+                    mGrids.valueAt(i).add(newEarthquakes);
+                    recordTiming(zoom, System.nanoTime() - start, true);
+                }
+
+                int zoom = mZoom;
+                long start = System.nanoTime();
+                ClusterGrid grid = mGrids.get(zoom);
+                if (grid == null) {
+                    grid = buildGrid(zoom, mEarthquakes);
+                    mGrids.put(zoom, grid);
+                    recordTiming(zoom, System.nanoTime() - start, false);
+                }
+
+                deliver(zoom, grid.getClusters(), System.nanoTime() - start);
+            }
+        });
+    }
+
+    public void clear() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mEarthquakes.clear();
+                mGrids.clear();
+                deliver(mZoom, Collections.<Cluster>emptyList(), 0);
+            }
+        });
+    }
+
+    // Stop the clustering thread, the clusterer cannot be used afterwards
+    public void release() {
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    // Return a copy of the clustering times recorded for every zoom level so far
+    public SparseArray<ZoomTiming> getTimings() {
+        synchronized (mTimings) {
+            SparseArray<ZoomTiming> timings = new SparseArray<>(mTimings.size());
+            for (int i = 0; i < mTimings.size(); i++) {
+                timings.put(mTimings.keyAt(i), new ZoomTiming(mTimings.valueAt(i)));
+            }
+            return timings;
+        }
+    }
+
+    private ClusterGrid buildGrid(int zoom, List<Earthquake> earthquakes) {
+        ClusterGrid grid = new ClusterGrid(zoom, mCellSize);
+        grid.add(earthquakes);
+        return grid;
+    }
+
+    private void recordTiming(int zoom, long nanos, boolean incremental) {
+        synchronized (mTimings) {
+            ZoomTiming timing = mTimings.get(zoom);
+            if (timing == null) {
+                timing = new ZoomTiming();
+                mTimings.put(zoom, timing);
+            }
+            timing.record(nanos, incremental);
+        }
+    }
+
+    private void deliver(final int zoom, Collection<Cluster> gridClusters, final long clusteringTimeNanos) {
+        // The grid keeps changing on this thread, so the main thread gets its own copies
+        final List<Cluster> clusters = new ArrayList<>(gridClusters.size());
+        for (Cluster cluster : gridClusters) {
+            clusters.add(new Cluster(cluster));
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Drop the result if the zoom changed while it was posted
+                if (zoom == mZoom) {
+                    mListener.onClustersReady(zoom, clusters, clusteringTimeNanos);
+                }
+            }
+        });
+    }
+
+    // A group of earthquakes falling into the same grid cell
+    public static class Cluster {
+        private int mSize;
+        private double mLatitudeSum;
+        private double mLongitudeSum;
+        private Earthquake mStrongestEarthquake;
+
+        Cluster() {
+        }
+
+        Cluster(Cluster other) {
+            mSize = other.mSize;
+            mLatitudeSum = other.mLatitudeSum;
+            mLongitudeSum = other.mLongitudeSum;
+            mStrongestEarthquake = other.mStrongestEarthquake;
+        }
+
+        void add(Earthquake earthquake) {
+            mSize++;
+            mLatitudeSum += earthquake.getLatitude();
+            mLongitudeSum += earthquake.getLongitude();
+
+            if (mStrongestEarthquake == null || earthquake.getMagnitude() > mStrongestEarthquake.getMagnitude()) {
+                mStrongestEarthquake = earthquake;
+            }
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+
+        // The marker is placed at the centroid of all earthquakes in the cell
+        public double getLatitude() {
+            return mLatitudeSum / mSize;
+        }
+
+        public double getLongitude() {
+            return mLongitudeSum / mSize;
+        }
+
+        public Earthquake getStrongestEarthquake() {
+            return mStrongestEarthquake;
+        }
+    }
+
+    // Clustering times of a single zoom level
+    public static class ZoomTiming {
+        private long mLastFullNanos;
+        private long mLastIncrementalNanos;
+        private int mFullCount;
+        private int mIncrementalCount;
+
+        ZoomTiming() {
+        }
+
+        ZoomTiming(ZoomTiming other) {
+            mLastFullNanos = other.mLastFullNanos;
+            mLastIncrementalNanos = other.mLastIncrementalNanos;
+            mFullCount = other.mFullCount;
+            mIncrementalCount = other.mIncrementalCount;
+        }
+
+        void record(long nanos, boolean incremental) {
+            if (incremental) {
+                mLastIncrementalNanos = nanos;
+                mIncrementalCount++;
+            } else {
+                mLastFullNanos = nanos;
+                mFullCount++;
+            }
+        }
+
+        public long getLastFullNanos() {
+            return mLastFullNanos;
+        }
+
+        public long getLastIncrementalNanos() {
+            return mLastIncrementalNanos;
+        }
+
+        public int getFullCount() {
+            return mFullCount;
+        }
+
+        public int getIncrementalCount() {
+            return mIncrementalCount;
+        }
+    }
+}
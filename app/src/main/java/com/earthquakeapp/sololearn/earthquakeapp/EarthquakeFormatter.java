@@ -0,0 +1,89 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.content.Context;
+import android.support.v4.content.ContextCompat;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// Formats earthquakes into list rows. The formats are reused, so an instance must only be used by one thread.
+public class EarthquakeFormatter implements EarthquakePipeline.Formatter {
+
+    private static final String LOCATION_SEPARATOR = " of ";
+
+    private final Context mContext;
+
+    // i.e. "Mar 3, 1984", "4:30 PM" and "6.1"
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("LLL dd, yyyy");
+    private final SimpleDateFormat mTimeFormat = new SimpleDateFormat("h:mm a");
+    private final DecimalFormat mMagnitudeFormat = new DecimalFormat("0.0");
+
+    public EarthquakeFormatter(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public EarthquakeRow format(Earthquake earthquake) {
+        String magnitude = mMagnitudeFormat.format(earthquake.getMagnitude());
+        Date dateObject = new Date(earthquake.getDateInMilliseconds());
+
+        String nearLocation;
+        String location;
+
+        String data = earthquake.getLocation();
+        if (data.contains(LOCATION_SEPARATOR)) {
+            String[] parts = data.split(LOCATION_SEPARATOR);
+            nearLocation = parts[0] + " Near Of";
+            location = parts[1];
+        } else {
+            nearLocation = mContext.getString(R.string.near_the);
+            location = data;
+        }
+
+        return new EarthquakeRow(earthquake, magnitude, getMagnitudeColor(magnitude), nearLocation, location,
+                mDateFormat.format(dateObject), mTimeFormat.format(dateObject));
+    }
+
+    private int getMagnitudeColor(String magnitudeString) {
+        double magnitude = Double.parseDouble(magnitudeString);
+        int magnitudeColorResourceId;
+        int magnitudeFloor = (int) Math.floor(magnitude);
+
+        switch (magnitudeFloor) {
+            case 0:
+            case 1:
+                magnitudeColorResourceId = R.color.magnitude1;
+                break;
+            case 2:
+                magnitudeColorResourceId = R.color.magnitude2;
+                break;
+            case 3:
+                magnitudeColorResourceId = R.color.magnitude3;
+                break;
+            case 4:
+                magnitudeColorResourceId = R.color.magnitude4;
+                break;
+            case 5:
+                magnitudeColorResourceId = R.color.magnitude5;
+                break;
+            case 6:
+                magnitudeColorResourceId = R.color.magnitude6;
+                break;
+            case 7:
+                magnitudeColorResourceId = R.color.magnitude7;
+                break;
+            case 8:
+                magnitudeColorResourceId = R.color.magnitude8;
+                break;
+            case 9:
+                magnitudeColorResourceId = R.color.magnitude9;
+                break;
+            default:
+                magnitudeColorResourceId = R.color.magnitude10plus;
+                break;
+        }
+
+        return ContextCompat.getColor(mContext, magnitudeColorResourceId);
+    }
+}
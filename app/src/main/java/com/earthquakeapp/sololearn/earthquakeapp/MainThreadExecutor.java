@@ -0,0 +1,18 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+// Runs tasks on the main thread. The pipeline outlives the activity in the retained fragment, so its
+// executor must not be an inner class which would keep the activity alive.
+public class MainThreadExecutor implements Executor {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public void execute(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+}
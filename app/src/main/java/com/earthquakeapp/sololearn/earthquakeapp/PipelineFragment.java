@@ -0,0 +1,82 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.app.Fragment;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Headless fragment which is retained across configuration changes, so the loading pipeline, the
+// listed earthquakes and the paging state outlive the activity when the screen is rotated
+public class PipelineFragment extends Fragment {
+
+    public static final String TAG = "pipeline";
+
+    private EarthquakePipeline mPipeline;
+    private final List<EarthquakeRow> mEarthquakes = new ArrayList<>();
+
+    // Position after the last listed earthquake
+    private PageCursor mCursor;
+
+    // Day the user jumped to while the window up to it is being fetched, -1 if there is no jump
+    private long mJumpDayStart = -1;
+    private long mJumpDayEnd = -1;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setRetainInstance(true);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        if (mPipeline != null) {
+            mPipeline.shutdown();
+        }
+    }
+
+    public EarthquakePipeline getPipeline() {
+        return mPipeline;
+    }
+
+    public void setPipeline(EarthquakePipeline pipeline) {
+        mPipeline = pipeline;
+    }
+
+    // The list the adapter works on
+    public List<EarthquakeRow> getEarthquakes() {
+        return mEarthquakes;
+    }
+
+    public PageCursor getCursor() {
+        return mCursor;
+    }
+
+    public void setCursor(PageCursor cursor) {
+        mCursor = cursor;
+    }
+
+    public boolean isJumping() {
+        return mJumpDayStart != -1;
+    }
+
+    public long getJumpDayStart() {
+        return mJumpDayStart;
+    }
+
+    public long getJumpDayEnd() {
+        return mJumpDayEnd;
+    }
+
+    public void setJump(long dayStart, long dayEnd) {
+        mJumpDayStart = dayStart;
+        mJumpDayEnd = dayEnd;
+    }
+
+    public void clearJump() {
+        mJumpDayStart = -1;
+        mJumpDayEnd = -1;
+    }
+}
@@ -1,148 +0,0 @@
-package com.earthquakeapp.sololearn.earthquakeapp;
-
-import android.text.TextUtils;
-import android.util.Log;
-import android.util.Pair;
-import android.view.TextureView;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
-
-// Helper methods for getting data
-public class QueryUtils {
-
-    private static final String LOG_TAG = QueryUtils.class.getSimpleName();
-
-    // Returns new URL object from the given string URL
-    private static URL createUrl(String stringUrl) {
-        URL url = null;
-
-        try {
-            url = new URL(stringUrl);
-        } catch (MalformedURLException e) {
-            Log.e(LOG_TAG, "Problem building the URL ", e);
-        }
-
-        return url;
-    }
-
-    // Make an HTTP request to the given URL and return a String as the response
-    private static String makeHTTPRequest(URL url) throws IOException {
-        String jsonResponse = "";
-
-        if (url == null) {
-            return jsonResponse;
-        }
-
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
-
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000);
-            urlConnection.setConnectTimeout(15000);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful, then read the input stream and parse the response
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
-            } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
-            }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the earthquake JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                inputStream.close();
-            }
-        }
-
-        return jsonResponse;
-    }
-
-    // Convert the inputStream into a String which contains the whole JSON response from the server
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        // If a string is going to be modified then it is better to use StringBuilder
-        StringBuilder output = new StringBuilder();
-
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
-            }
-        }
-
-        return output.toString();
-    }
-
-    // Return a list of Earthquake objects that has been built from parsing the given JSON response
-    private static List<Earthquake> extractFeatureFromJson(String earthquakeJSON) {
-        if (TextUtils.isEmpty(earthquakeJSON)) {
-            return null;
-        }
-
-        List<Earthquake> earthquakes = new ArrayList<>();
-
-        try {
-            // Create JSONObject from the JSON response string
-            JSONObject baseJsonResponse = new JSONObject(earthquakeJSON);
-
-            // Extract the JSONArray associated with the key called "features" containing list of earthquake data
-            JSONArray earthquakeArray = baseJsonResponse.getJSONArray("features");
-
-            for (int i = 0; i < earthquakeArray.length(); i++) {
-                JSONObject currentEarthquake = earthquakeArray.getJSONObject(i);
-                JSONObject properties = currentEarthquake.getJSONObject("properties");
-
-                double magnitude = properties.getDouble("mag");
-                String location = properties.getString("place");
-                long time = properties.getLong("time");
-                String url = properties.getString("url");
-
-                Earthquake earthquake = new Earthquake(magnitude, location,time, url);
-                earthquakes.add(earthquake);
-            }
-        } catch (JSONException e) {
-            Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
-        }
-
-        return earthquakes;
-    }
-
-    // Send a request and get a list of Earthquake objects
-    public static List<Earthquake> fetchEarthquakeData(String requestUrl) {
-        URL url = createUrl(requestUrl);
-        String jsonResponse = null;
-
-        try {
-            jsonResponse = makeHTTPRequest(url);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTP request.", e);
-        }
-
-        List<Earthquake> earthquakes = extractFeatureFromJson(jsonResponse);
-
-        return earthquakes;
-    }
-}
@@ -0,0 +1,220 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+// Collects view holder create and bind timings per view type and the frame durations while the
+// RecyclerView is scrolling, and turns them into a plain text report. Only used on the main thread.
+public class ScrollPerformanceMonitor implements Choreographer.FrameCallback {
+
+    private static final int SLOWEST_BINDS = 10;
+    private static final int FRAME_SAMPLES = 1000;
+
+    // A frame counts as janky if it took long enough to miss at least one vsync
+    private static final double JANK_FACTOR = 1.5;
+
+    private final long mFrameIntervalNanos;
+
+    private final SparseArray<Timing> mCreateTimings = new SparseArray<>();
+    private final SparseArray<Timing> mBindTimings = new SparseArray<>();
+    private final SparseArray<Timing> mPartialBindTimings = new SparseArray<>();
+
+    // Min-heap, so the fastest of the slowest binds is the one to drop
+    private final PriorityQueue<Bind> mSlowestBinds = new PriorityQueue<>(SLOWEST_BINDS, new Comparator<Bind>() {
+        @Override
+        public int compare(Bind first, Bind second) {
+            return Long.compare(first.nanos, second.nanos);
+        }
+    });
+
+    private final LatencyTracker mFrameDurations = new LatencyTracker(FRAME_SAMPLES);
+    private long mFrameCount;
+    private long mJankyFrameCount;
+    private long mLongestFrameNanos;
+    private long mLastFrameTimeNanos;
+    private boolean mCapturing;
+
+    private RecyclerView mRecyclerView;
+
+    private final RecyclerView.OnScrollListener mScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                stopCapturing();
+            } else {
+                startCapturing();
+            }
+        }
+    };
+
+    public ScrollPerformanceMonitor(float refreshRate) {
+        mFrameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+    }
+
+    public void attach(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+        mRecyclerView.addOnScrollListener(mScrollListener);
+    }
+
+    public void detach() {
+        stopCapturing();
+
+        if (mRecyclerView != null) {
+            mRecyclerView.removeOnScrollListener(mScrollListener);
+            mRecyclerView = null;
+        }
+    }
+
+    public void onViewHolderCreated(int viewType, long nanos) {
+        getTiming(mCreateTimings, viewType).record(nanos);
+    }
+
+    // A partial bind only rebinds the views named by a change payload
+    public void onViewHolderBound(int viewType, int position, long nanos, boolean partial) {
+        getTiming(partial ? mPartialBindTimings : mBindTimings, viewType).record(nanos);
+
+        if (mSlowestBinds.size() < SLOWEST_BINDS) {
+            mSlowestBinds.add(new Bind(viewType, position, nanos, partial));
+        } else if (mSlowestBinds.peek().nanos < nanos) {
+            mSlowestBinds.poll();
+            mSlowestBinds.add(new Bind(viewType, position, nanos, partial));
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mCapturing) {
+            return;
+        }
+
+        if (mLastFrameTimeNanos != 0) {
+            long duration = frameTimeNanos - mLastFrameTimeNanos;
+
+            mFrameCount++;
+            mFrameDurations.record(TimeUnit.NANOSECONDS.toMicros(duration));
+            mLongestFrameNanos = Math.max(mLongestFrameNanos, duration);
+
+            if (duration > mFrameIntervalNanos * JANK_FACTOR) {
+                mJankyFrameCount++;
+            }
+        }
+
+        mLastFrameTimeNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void startCapturing() {
+        if (mCapturing) {
+            return;
+        }
+
+        mCapturing = true;
+        mLastFrameTimeNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    private void stopCapturing() {
+        mCapturing = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    public void reset() {
+        mCreateTimings.clear();
+        mBindTimings.clear();
+        mPartialBindTimings.clear();
+        mSlowestBinds.clear();
+        mFrameDurations.clear();
+        mFrameCount = 0;
+        mJankyFrameCount = 0;
+        mLongestFrameNanos = 0;
+    }
+
+    public double getJankyFramePercentage() {
+        return mFrameCount == 0 ? 0 : 100.0 * mJankyFrameCount / mFrameCount;
+    }
+
+    public String buildReport() {
+        StringBuilder report = new StringBuilder();
+
+        report.append("Scroll frames\n");
+        report.append(String.format(Locale.US, "  frames: %d, janky: %d (%.1f%%), frame interval: %.1f ms\n",
+                mFrameCount, mJankyFrameCount, getJankyFramePercentage(), toMillis(mFrameIntervalNanos)));
+        report.append(String.format(Locale.US, "  p50: %.1f ms, p90: %.1f ms, p99: %.1f ms, longest: %.1f ms\n",
+                mFrameDurations.getPercentile(0.5) / 1000.0, mFrameDurations.getPercentile(0.9) / 1000.0,
+                mFrameDurations.getPercentile(0.99) / 1000.0, toMillis(mLongestFrameNanos)));
+
+        appendTimings(report, "View holder creates", mCreateTimings);
+        appendTimings(report, "Full binds", mBindTimings);
+        appendTimings(report, "Partial binds", mPartialBindTimings);
+
+        List<Bind> slowestBinds = new ArrayList<>(mSlowestBinds);
+        Collections.sort(slowestBinds, Collections.reverseOrder(mSlowestBinds.comparator()));
+
+        report.append("Slowest binds\n");
+        for (Bind bind : slowestBinds) {
+            report.append(String.format(Locale.US, "  position %d, view type %d%s: %.2f ms\n",
+                    bind.position, bind.viewType, bind.partial ? " (partial)" : "", toMillis(bind.nanos)));
+        }
+
+        return report.toString();
+    }
+
+    private static void appendTimings(StringBuilder report, String title, SparseArray<Timing> timings) {
+        report.append(title).append('\n');
+
+        for (int i = 0; i < timings.size(); i++) {
+            Timing timing = timings.valueAt(i);
+            report.append(String.format(Locale.US, "  view type %d: count %d, avg %.2f ms, max %.2f ms\n",
+                    timings.keyAt(i), timing.count, toMillis(timing.totalNanos / timing.count),
+                    toMillis(timing.maxNanos)));
+        }
+    }
+
+    private static Timing getTiming(SparseArray<Timing> timings, int viewType) {
+        Timing timing = timings.get(viewType);
+        if (timing == null) {
+            timing = new Timing();
+            timings.put(viewType, timing);
+        }
+        return timing;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static class Timing {
+        long count;
+        long totalNanos;
+        long maxNanos;
+
+        void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+    }
+
+    private static class Bind {
+        final int viewType;
+        final int position;
+        final long nanos;
+        final boolean partial;
+
+        Bind(int viewType, int position, long nanos, boolean partial) {
+            this.viewType = viewType;
+            this.position = position;
+            this.nanos = nanos;
+            this.partial = partial;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterGridTest {
+
+    private static final int CELL_SIZE = 64;
+
+    @Test
+    public void assignsCellsFromTheMercatorProjection() {
+        // Zoom 1 is a 512 pixel world, so 8 x 8 cells of 64 pixels
+        ClusterGrid grid = new ClusterGrid(1, CELL_SIZE);
+        assertEquals(8, grid.getCellCount());
+
+        assertEquals(0, grid.getCellX(-180));
+        assertEquals(3, grid.getCellX(-0.1));
+        assertEquals(4, grid.getCellX(0));
+        assertEquals(7, grid.getCellX(179.9));
+
+        assertEquals(4, grid.getCellY(0));
+        assertEquals(3, grid.getCellY(0.1));
+        assertEquals(0, grid.getCellY(84));
+        assertEquals(7, grid.getCellY(-84));
+    }
+
+    @Test
+    public void keepsTheEdgesOfTheWorldInsideTheGrid() {
+        ClusterGrid grid = new ClusterGrid(2, CELL_SIZE);
+        long lastCell = grid.getCellCount() - 1;
+
+        // The antimeridian wraps around to the first column instead of opening another one
+        assertEquals(grid.getCellX(-180), grid.getCellX(180));
+        assertEquals(0, grid.getCellX(180));
+        assertEquals(lastCell, grid.getCellX(179.999));
+
+        // The poles are clamped to the first and the last row
+        assertEquals(0, grid.getCellY(90));
+        assertEquals(lastCell, grid.getCellY(-90));
+    }
+
+    @Test
+    public void incrementalAddMatchesFullRebuild() {
+        Random random = new Random(42);
+        List<Earthquake> earthquakes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            earthquakes.add(new Earthquake("id" + i, 0, random.nextDouble() * 8, "", i, "",
+                    latitude, longitude, 10));
+        }
+        earthquakes.add(new Earthquake("edge", 0, 9, "", 0, "", 0, 180, 10));
+
+        for (int zoom = 0; zoom <= 6; zoom++) {
+            ClusterGrid full = new ClusterGrid(zoom, CELL_SIZE);
+            full.add(earthquakes);
+
+            ClusterGrid incremental = new ClusterGrid(zoom, CELL_SIZE);
+            for (int start = 0; start < earthquakes.size(); start += 20) {
+                incremental.add(earthquakes.subList(start, Math.min(start + 20, earthquakes.size())));
+            }
+
+            assertEquals(describe(full), describe(incremental));
+            assertTrue(full.size() <= full.getCellCount() * full.getCellCount());
+        }
+    }
+
+    // Key every cluster by its strongest earthquake, so that two grids can be compared
+    private static Map<String, String> describe(ClusterGrid grid) {
+        Map<String, String> clusters = new HashMap<>();
+        for (EarthquakeClusterer.Cluster cluster : grid.getClusters()) {
+            clusters.put(cluster.getStrongestEarthquake().getId(), cluster.getSize() + " "
+                    + cluster.getLatitude() + " " + cluster.getLongitude());
+        }
+        return clusters;
+    }
+}
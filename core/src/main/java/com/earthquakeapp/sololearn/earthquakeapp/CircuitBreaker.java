@@ -0,0 +1,82 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+// Stops sending requests to a backend after several consecutive failures. After a cool down
+// period a single trial request is let through, its outcome decides whether the circuit closes again.
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenDurationMillis;
+
+    private State mState = State.CLOSED;
+    private int mConsecutiveFailures;
+    private long mOpenedAt;
+    private boolean mTrialInFlight;
+    private int mTripCount;
+
+    public CircuitBreaker(int failureThreshold, long openDurationMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenDurationMillis = openDurationMillis;
+    }
+
+    // Return true if a request may be sent to the backend right now
+    public synchronized boolean allowRequest() {
+        if (mState == State.OPEN && System.currentTimeMillis() - mOpenedAt >= mOpenDurationMillis) {
+            mState = State.HALF_OPEN;
+            mTrialInFlight = false;
+        }
+
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                // Only one trial request at a time while the backend is still suspicious
+                if (mTrialInFlight) {
+                    return false;
+                }
+                mTrialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        mConsecutiveFailures = 0;
+        mTrialInFlight = false;
+        mState = State.CLOSED;
+    }
+
+    // The request ended without telling anything about the backend, e.g. it was cancelled or
+    // rejected as a client error. A half open circuit lets the next trial request through.
+    public synchronized void recordNeutral() {
+        mTrialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        mConsecutiveFailures++;
+        mTrialInFlight = false;
+
+        if (mState == State.HALF_OPEN || mConsecutiveFailures >= mFailureThreshold) {
+            if (mState != State.OPEN) {
+                mTripCount++;
+            }
+            mState = State.OPEN;
+            mOpenedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+
+    // Number of times the circuit went open
+    public synchronized int getTripCount() {
+        return mTripCount;
+    }
+}
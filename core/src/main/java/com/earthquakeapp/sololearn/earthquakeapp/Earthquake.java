@@ -0,0 +1,86 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+public class Earthquake {
+
+    private String mId;
+    private long mUpdatedInMilliseconds;
+    private double mMagnitude;
+    private String mLocation;
+    private long mTimeInMilliseconds;
+    private String mDetailsUrl;
+    private double mLatitude;
+    private double mLongitude;
+    private double mDepth;
+    private String mSource;
+
+    public Earthquake(String id, long updatedInMilliseconds, double magnitude, String location,
+                      long timeInMilliseconds, String detailsUrl, double latitude, double longitude, double depth){
+        mId = id;
+        mUpdatedInMilliseconds = updatedInMilliseconds;
+        mMagnitude = magnitude;
+        mLocation = location;
+        mTimeInMilliseconds = timeInMilliseconds;
+        mDetailsUrl = detailsUrl;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mDepth = depth;
+    }
+
+    // Id of the event, it stays the same when the event is revised
+    public String getId(){
+        return mId;
+    }
+
+    // Time of the latest revision of the event
+    public long getUpdatedInMilliseconds(){
+        return mUpdatedInMilliseconds;
+    }
+
+    // Return true if this is a newer revision of the same event
+    public boolean isRevisionOf(Earthquake other){
+        return mId.equals(other.mId) && mUpdatedInMilliseconds > other.mUpdatedInMilliseconds;
+    }
+
+    public double getMagnitude(){
+        return mMagnitude;
+    }
+
+    public String getLocation(){
+        return mLocation;
+    }
+
+    public long getDateInMilliseconds(){
+        return mTimeInMilliseconds;
+    }
+
+    public String getDetailsUrl(){
+        return mDetailsUrl;
+    }
+
+    public double getLatitude(){
+        return mLatitude;
+    }
+
+    public double getLongitude(){
+        return mLongitude;
+    }
+
+    // Depth of the hypocenter in kilometers
+    public double getDepth(){
+        return mDepth;
+    }
+
+    // Name of the source which listed the event, null if it did not come from a MultiSourceCatalog
+    public String getSource(){
+        return mSource;
+    }
+
+    void setSource(String source){
+        mSource = source;
+    }
+
+    // Some events are published without a geometry, those cannot be placed on a map
+    public boolean hasCoordinates(){
+        return !Double.isNaN(mLatitude) && !Double.isNaN(mLongitude);
+    }
+}
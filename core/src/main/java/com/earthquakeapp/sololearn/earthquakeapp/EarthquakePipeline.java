@@ -0,0 +1,515 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Loads pages of earthquakes in five stages, each on its own thread:
+//
+//   fetch -> decode -> format -> diff -> deliver
+//
+// Fetch queries the sources of the catalog, decode parses and merges their responses and moves the
+// page cursor, format turns the earthquakes into list rows, diff drops the listed earthquakes and
+// picks the revised ones, and deliver hands the page to the main thread. The next page is fetched
+// while the requested one goes through the later stages, but no further: a page is only fetched
+// once the page before it is requested, and only requested pages are handed to the listener.
+//
+// Loading runs in sessions which start at a cursor. Starting a new session cancels the previous
+// one: its fetch is interrupted, and its pages are dropped by the next stage which sees them.
+public class EarthquakePipeline {
+
+    private static final Logger LOGGER = Logger.getLogger(EarthquakePipeline.class.getSimpleName());
+
+    // Pages which may wait between two stages
+    private static final int QUEUE_CAPACITY = 1;
+
+    // Pages fetched ahead of the requested ones
+    private static final int PREFETCH_PAGES = 1;
+
+    public interface Formatter {
+        // Called on the format thread only
+        EarthquakeRow format(Earthquake earthquake);
+    }
+
+    public interface Listener {
+        // Called on the main thread for every requested page, in order
+        void onPageDelivered(Page page);
+    }
+
+    private final Formatter mFormatter;
+    private final Executor mMainThreadExecutor;
+
+    private final PipelineStage<Page> mFetchStage;
+    private final PipelineStage<Page> mDecodeStage;
+    private final PipelineStage<Page> mFormatStage;
+    private final PipelineStage<Page> mDiffStage;
+    private final PipelineStage<Page> mDeliverStage;
+
+    private volatile MultiSourceCatalog mCatalog;
+    private volatile Session mSession;
+
+    // The session whose page the fetch thread works on, so a cancel can interrupt it
+    private final Object mFetchLock = new Object();
+    private Session mFetchingSession;
+    private Thread mFetchThread;
+
+    // Main thread only, pages which were not requested yet or arrived while no listener was
+    // attached, i.e. during a rotation
+    private Listener mListener;
+    private final List<Page> mReadyPages = new ArrayList<>();
+
+    // Pages are handed to the listener through the main thread executor, i.e. a Handler of the main looper
+    public EarthquakePipeline(Formatter formatter, MultiSourceCatalog catalog, Executor mainThreadExecutor) {
+        mFormatter = formatter;
+        mCatalog = catalog;
+        mMainThreadExecutor = mainThreadExecutor;
+
+        mDeliverStage = new PipelineStage<>("deliver", QUEUE_CAPACITY, new PipelineStage.Worker<Page>() {
+            @Override
+            public Page process(Page page) {
+                deliver(page);
+                return null;
+            }
+        });
+        mDiffStage = new PipelineStage<>("diff", QUEUE_CAPACITY, mDeliverStage, new PipelineStage.Worker<Page>() {
+            @Override
+            public Page process(Page page) {
+                return diff(page);
+            }
+        });
+        mFormatStage = new PipelineStage<>("format", QUEUE_CAPACITY, mDiffStage, new PipelineStage.Worker<Page>() {
+            @Override
+            public Page process(Page page) {
+                return format(page);
+            }
+        });
+        mDecodeStage = new PipelineStage<>("decode", QUEUE_CAPACITY, mFormatStage, new PipelineStage.Worker<Page>() {
+            @Override
+            public Page process(Page page) {
+                return decode(page);
+            }
+        });
+        // Decode submits the next page to fetch, so a bounded fetch queue could wait on itself. It never
+        // holds more than one page per session anyway.
+        mFetchStage = new PipelineStage<>("fetch", 0, mDecodeStage, new PipelineStage.Worker<Page>() {
+            @Override
+            public Page process(Page page) {
+                return fetch(page);
+            }
+        });
+
+        mDeliverStage.start();
+        mDiffStage.start();
+        mFormatStage.start();
+        mDecodeStage.start();
+        mFetchStage.start();
+    }
+
+    public void setCatalog(MultiSourceCatalog catalog) {
+        mCatalog = catalog;
+    }
+
+    public MultiSourceCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    // Start loading at the cursor, the first page is delivered without being requested.
+    //
+    // The parameters are added to the ones of the cursor. The listed earthquakes, their update times
+    // by id, are the ones the diff stage drops or takes revisions of. If replaceList is set, a first
+    // page which does not only revise listed earthquakes replaces the whole list.
+    public Session start(PageCursor cursor, Map<String, String> parameters, int pageSize, boolean forceRefresh,
+                         Map<String, Long> listedRevisions, boolean replaceList) {
+        cancel();
+
+        Session session = new Session(new LinkedHashMap<>(parameters), pageSize, forceRefresh,
+                mCatalog, listedRevisions, replaceList);
+        mSession = session;
+
+        submit(mFetchStage, new Page(session, cursor, 0));
+        return session;
+    }
+
+    // Main thread only. Request the next page of the current session, which also lets the page
+    // after it be fetched.
+    public void requestPage() {
+        Session session = mSession;
+        if (session == null) {
+            return;
+        }
+
+        Page pendingPage;
+        synchronized (session) {
+            session.mRequestedCount++;
+            pendingPage = session.mPendingPage;
+            if (pendingPage != null && session.mayFetch(pendingPage)) {
+                session.mPendingPage = null;
+            } else {
+                pendingPage = null;
+            }
+        }
+
+        if (pendingPage != null) {
+            submit(mFetchStage, pendingPage);
+        }
+
+        dispatchReadyPages();
+    }
+
+    // True if the current session may still deliver pages
+    public boolean isLoading() {
+        Session session = mSession;
+        return session != null && !session.isCancelled() && !session.mEnded;
+    }
+
+    public void cancel() {
+        Session session = mSession;
+        mSession = null;
+        if (session == null) {
+            return;
+        }
+
+        synchronized (mFetchLock) {
+            session.mCancelled = true;
+
+            // Stop waiting for the sources, their requests are cancelled as well
+            if (mFetchingSession == session) {
+                mFetchThread.interrupt();
+            }
+        }
+    }
+
+    // Main thread only. Pages delivered while no listener is attached are kept for the next one.
+    public void setListener(Listener listener) {
+        mListener = listener;
+        dispatchReadyPages();
+    }
+
+    public void shutdown() {
+        cancel();
+        mFetchStage.shutdown();
+        mDecodeStage.shutdown();
+        mFormatStage.shutdown();
+        mDiffStage.shutdown();
+        mDeliverStage.shutdown();
+    }
+
+    // Queue depths and throughput of every stage
+    public List<PipelineStage.Stats> getStats() {
+        List<PipelineStage.Stats> stats = new ArrayList<>();
+        stats.add(mFetchStage.getStats());
+        stats.add(mDecodeStage.getStats());
+        stats.add(mFormatStage.getStats());
+        stats.add(mDiffStage.getStats());
+        stats.add(mDeliverStage.getStats());
+        return stats;
+    }
+
+    private Page fetch(Page page) {
+        Session session = page.mSession;
+
+        synchronized (mFetchLock) {
+            if (session.isCancelled()) {
+                return null;
+            }
+            mFetchingSession = session;
+            mFetchThread = Thread.currentThread();
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<>(session.mParameters);
+        parameters.putAll(page.mCursor.getQueryParameters(session.mPageSize));
+        page.mParameters = parameters;
+
+        try {
+            page.mResponses = session.mCatalog.fetchResponses(parameters, session.mForceRefresh);
+        } catch (IOException e) {
+            if (!session.isCancelled()) {
+                LOGGER.log(Level.SEVERE, "Problem fetching the earthquakes", e);
+            }
+            page.mFailed = true;
+        } finally {
+            synchronized (mFetchLock) {
+                mFetchingSession = null;
+
+                // The interrupt of a cancel was meant for this fetch only, not for the next session
+                if (session.isCancelled()) {
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        return session.isCancelled() ? null : page;
+    }
+
+    private Page decode(Page page) {
+        Session session = page.mSession;
+        if (session.isCancelled()) {
+            return null;
+        }
+
+        if (!page.mFailed) {
+            List<Earthquake> earthquakes = session.mCatalog.decode(page.mResponses, page.mParameters);
+            page.mResponses = null;
+
+            // Drop the earthquakes at the bound of the cursor which came with the previous page, and
+            // the other versions of the ones another source listed earlier in the session
+            page.mEarthquakes = session.mCatalog.removeListedDuplicates(session.mListedEarthquakes,
+                    page.mCursor.filter(earthquakes, session.mPageSize));
+            page.mNextCursor = page.mCursor.next(earthquakes, session.mPageSize);
+            page.mLast = page.mCursor.isLastPage(earthquakes);
+
+            if (page.mEarthquakes.isEmpty() && !page.mLast) {
+                // Nothing to list yet, the cursor moved on to the next range of the service
+                fetchWhenRequested(new Page(session, page.mNextCursor, page.mIndex));
+                return null;
+            }
+
+            // The next page can be fetched while this one goes through the later stages
+            if (!page.mLast) {
+                fetchWhenRequested(new Page(session, page.mNextCursor, page.mIndex + 1));
+            }
+        }
+
+        return page;
+    }
+
+    // Fetch the page once the page before it is requested
+    private void fetchWhenRequested(Page page) {
+        Session session = page.mSession;
+
+        synchronized (session) {
+            if (!session.mayFetch(page)) {
+                session.mPendingPage = page;
+                return;
+            }
+        }
+
+        submit(mFetchStage, page);
+    }
+
+    private Page format(Page page) {
+        if (page.mSession.isCancelled()) {
+            return null;
+        }
+
+        if (page.mEarthquakes != null) {
+            List<EarthquakeRow> rows = new ArrayList<>(page.mEarthquakes.size());
+            for (Earthquake earthquake : page.mEarthquakes) {
+                rows.add(mFormatter.format(earthquake));
+            }
+            page.mRows = rows;
+        }
+
+        return page;
+    }
+
+    // Only the diff thread touches the listed revisions of a session
+    private Page diff(Page page) {
+        Session session = page.mSession;
+        if (session.isCancelled()) {
+            return null;
+        }
+
+        if (page.mRows != null) {
+            if (page.mIndex == 0 && session.mReplaceList && !areAllListed(session, page.mRows)) {
+                page.mReplacesList = true;
+                session.mListedRevisions.clear();
+            }
+
+            for (EarthquakeRow row : page.mRows) {
+                Long listedUpdate = session.mListedRevisions.get(row.getId());
+                long update = row.getEarthquake().getUpdatedInMilliseconds();
+
+                if (listedUpdate == null) {
+                    page.mInsertedRows.add(row);
+                    session.mListedRevisions.put(row.getId(), update);
+                } else if (update > listedUpdate) {
+                    page.mRevisedRows.add(row);
+                    session.mListedRevisions.put(row.getId(), update);
+                }
+            }
+        }
+
+        return page;
+    }
+
+    private static boolean areAllListed(Session session, List<EarthquakeRow> rows) {
+        for (EarthquakeRow row : rows) {
+            if (!session.mListedRevisions.containsKey(row.getId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Hand the page to the main thread, which keeps it until it is requested
+    private void deliver(final Page page) {
+        if (page.mSession.isCancelled()) {
+            return;
+        }
+
+        mMainThreadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mReadyPages.add(page);
+                dispatchReadyPages();
+            }
+        });
+    }
+
+    // Main thread only. The listener may request the next page or start a new session while it
+    // handles a page, so the state is read again for every page.
+    private void dispatchReadyPages() {
+        while (mListener != null && !mReadyPages.isEmpty()) {
+            Page page = mReadyPages.get(0);
+            Session session = page.mSession;
+
+            if (session.isCancelled()) {
+                mReadyPages.remove(0);
+                continue;
+            }
+
+            synchronized (session) {
+                if (session.mDeliveredCount >= session.mRequestedCount) {
+                    return;
+                }
+                session.mDeliveredCount++;
+            }
+
+            mReadyPages.remove(0);
+            if (page.isLast()) {
+                session.mEnded = true;
+            }
+            mListener.onPageDelivered(page);
+        }
+    }
+
+    private static void submit(PipelineStage<Page> stage, Page page) {
+        try {
+            stage.submit(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A run of consecutive pages, cancelled cooperatively: every stage checks the flag before its work
+    public static class Session {
+        private final Map<String, String> mParameters;
+        private final int mPageSize;
+        private final boolean mForceRefresh;
+        private final MultiSourceCatalog mCatalog;
+        private final Map<String, Long> mListedRevisions;
+        private final boolean mReplaceList;
+
+        // Only the decode thread touches the earthquakes listed so far
+        private final MultiSourceCatalog.ListedEarthquakes mListedEarthquakes =
+                new MultiSourceCatalog.ListedEarthquakes();
+
+        // Guarded by the session. The first page is requested right away, the page after the last
+        // fetched one waits here until the page before it is requested.
+        private int mRequestedCount = 1;
+        private int mDeliveredCount;
+        private Page mPendingPage;
+
+        private volatile boolean mCancelled;
+        private volatile boolean mEnded;
+
+        private Session(Map<String, String> parameters, int pageSize, boolean forceRefresh,
+                        MultiSourceCatalog catalog, Map<String, Long> listedRevisions, boolean replaceList) {
+            mParameters = parameters;
+            mPageSize = pageSize;
+            mForceRefresh = forceRefresh;
+            mCatalog = catalog;
+            mListedRevisions = listedRevisions;
+            mReplaceList = replaceList;
+        }
+
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        // Set for a refresh, whose first page may replace the list
+        public boolean mayReplaceList() {
+            return mReplaceList;
+        }
+
+        private boolean mayFetch(Page page) {
+            return page.mIndex < mRequestedCount + PREFETCH_PAGES;
+        }
+    }
+
+    // A page on its way through the stages, each stage fills in its results
+    public static class Page {
+        private final Session mSession;
+        private final PageCursor mCursor;
+        private final int mIndex;
+
+        private Map<String, String> mParameters;
+        private List<String> mResponses;
+        private boolean mFailed;
+        private boolean mLast;
+        private List<Earthquake> mEarthquakes;
+        private PageCursor mNextCursor;
+        private List<EarthquakeRow> mRows;
+
+        private boolean mReplacesList;
+        private final List<EarthquakeRow> mInsertedRows = new ArrayList<>();
+        private final List<EarthquakeRow> mRevisedRows = new ArrayList<>();
+
+        private Page(Session session, PageCursor cursor, int index) {
+            mSession = session;
+            mCursor = cursor;
+            mIndex = index;
+        }
+
+        public Session getSession() {
+            return mSession;
+        }
+
+        public PageCursor getCursor() {
+            return mCursor;
+        }
+
+        // Cursor after this page, null if it failed
+        public PageCursor getNextCursor() {
+            return mNextCursor;
+        }
+
+        // Zero for the first page of the session
+        public int getIndex() {
+            return mIndex;
+        }
+
+        public boolean isFailed() {
+            return mFailed;
+        }
+
+        // Number of earthquakes of the page, including the listed ones
+        public int getEarthquakeCount() {
+            return mRows != null ? mRows.size() : 0;
+        }
+
+        // A failed page, or one after which the cursor has nothing left, ends the session
+        public boolean isLast() {
+            return mFailed || mLast;
+        }
+
+        // Set if the list has to be cleared before the inserted rows are added
+        public boolean replacesList() {
+            return mReplacesList;
+        }
+
+        public List<EarthquakeRow> getInsertedRows() {
+            return mInsertedRows;
+        }
+
+        public List<EarthquakeRow> getRevisedRows() {
+            return mRevisedRows;
+        }
+    }
+}
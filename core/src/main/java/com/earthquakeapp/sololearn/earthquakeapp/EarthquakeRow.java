@@ -0,0 +1,56 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+// An earthquake together with the texts and color of its list row, formatted off the main thread
+public class EarthquakeRow {
+
+    private Earthquake mEarthquake;
+    private String mMagnitude;
+    private int mMagnitudeColor;
+    private String mNearLocation;
+    private String mLocation;
+    private String mDate;
+    private String mTime;
+
+    public EarthquakeRow(Earthquake earthquake, String magnitude, int magnitudeColor, String nearLocation,
+                         String location, String date, String time) {
+        mEarthquake = earthquake;
+        mMagnitude = magnitude;
+        mMagnitudeColor = magnitudeColor;
+        mNearLocation = nearLocation;
+        mLocation = location;
+        mDate = date;
+        mTime = time;
+    }
+
+    public Earthquake getEarthquake() {
+        return mEarthquake;
+    }
+
+    public String getId() {
+        return mEarthquake.getId();
+    }
+
+    public String getMagnitude() {
+        return mMagnitude;
+    }
+
+    public int getMagnitudeColor() {
+        return mMagnitudeColor;
+    }
+
+    public String getNearLocation() {
+        return mNearLocation;
+    }
+
+    public String getLocation() {
+        return mLocation;
+    }
+
+    public String getDate() {
+        return mDate;
+    }
+
+    public String getTime() {
+        return mTime;
+    }
+}
@@ -0,0 +1,19 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// A catalog of earthquakes which answers FDSN event queries, i.e. the USGS or a regional agency
+public interface EarthquakeSource {
+
+    // Short name of the catalog, used in the metrics and logs
+    String getName();
+
+    // Return the raw response to the FDSN query parameters. Failures are thrown, so they cannot be
+    // mistaken for an empty result.
+    String fetchResponse(Map<String, String> parameters, boolean forceRefresh) throws IOException;
+
+    // Return the earthquakes of a response, in the order the query asked for
+    List<Earthquake> decode(String response) throws IOException;
+}
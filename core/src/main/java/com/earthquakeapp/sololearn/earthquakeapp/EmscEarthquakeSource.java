@@ -0,0 +1,101 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// Source backed by the FDSN event service of the European-Mediterranean Seismological Centre. Its
+// GeoJSON differs from the USGS one: times are ISO 8601 strings and the place is a Flinn-Engdahl region.
+public class EmscEarthquakeSource extends FdsnEarthquakeSource {
+
+    public static final String EMSC_URL = "https://www.seismicportal.eu/fdsnws/event/1/query";
+
+    private static final String DETAILS_URL = "https://www.seismicportal.eu/eventdetails.html?unid=";
+
+    // A separate executor, so an outage of one agency does not open the circuit of the other. It is
+    // shared by all the EMSC sources, so a rebuilt catalog keeps its circuit breaker and fallbacks.
+    private static final ResilientRequestExecutor sRequestExecutor =
+            new ResilientRequestExecutor(new HttpTransport(15000, 10000));
+
+    public EmscEarthquakeSource(String baseUrl) {
+        this(baseUrl, sRequestExecutor);
+    }
+
+    public EmscEarthquakeSource(String baseUrl, ResilientRequestExecutor requestExecutor) {
+        super("EMSC", baseUrl, requestExecutor);
+    }
+
+    @Override
+    protected String getFormat() {
+        return "json";
+    }
+
+    @Override
+    public List<Earthquake> decode(String response) throws IOException {
+        List<Earthquake> earthquakes = new ArrayList<>();
+
+        try {
+            JSONArray features = new JSONObject(response).getJSONArray("features");
+
+            for (int i = 0; i < features.length(); i++) {
+                Earthquake earthquake = parseFeature(features.getJSONObject(i));
+                if (earthquake != null) {
+                    earthquakes.add(earthquake);
+                }
+            }
+        } catch (JSONException | ParseException e) {
+            throw new IOException("Problem parsing the EMSC JSON results", e);
+        }
+
+        return earthquakes;
+    }
+
+    // Return null for features which cannot be listed because they have no magnitude or time yet
+    private static Earthquake parseFeature(JSONObject feature) throws JSONException, ParseException {
+        JSONObject properties = feature.getJSONObject("properties");
+
+        if (properties.isNull("mag") || properties.isNull("time")) {
+            QueryUtils.recordSkippedFeature();
+            return null;
+        }
+
+        String unid = properties.optString("unid", feature.optString("id"));
+        long time = parseTime(properties.getString("time"));
+        long updated = properties.isNull("lastupdate") ? time : parseTime(properties.getString("lastupdate"));
+        String region = properties.isNull("flynn_region") ? "" : properties.getString("flynn_region");
+
+        return new Earthquake(unid, updated, properties.getDouble("mag"), region, time, DETAILS_URL + unid,
+                properties.optDouble("lat"), properties.optDouble("lon"), properties.optDouble("depth"));
+    }
+
+    // Parse times like 2018-10-19T05:20:34.1Z, the fraction of a second has a varying number of digits
+    static long parseTime(String value) throws ParseException {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        if (value.length() < 19) {
+            throw new ParseException("Unparseable time: " + value, 0);
+        }
+        long time = timeFormat.parse(value.substring(0, 19)).getTime();
+
+        if (value.length() > 20 && value.charAt(19) == '.') {
+            String fraction = value.substring(20).replace("Z", "");
+            fraction = (fraction + "000").substring(0, 3);
+            try {
+                time += Integer.parseInt(fraction);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Unparseable time: " + value, 20);
+            }
+        }
+
+        return time;
+    }
+}
@@ -0,0 +1,70 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+
+// Source backed by an FDSN event service which answers in the GeoJSON format of the USGS
+public class FdsnEarthquakeSource implements EarthquakeSource {
+
+    public static final String USGS_URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    private final String mName;
+    private final String mBaseUrl;
+    private final ResilientRequestExecutor mRequestExecutor;
+
+    // Shares the request executor of QueryUtils, so the USGS requests keep their statistics in one place
+    public FdsnEarthquakeSource(String name, String baseUrl) {
+        this(name, baseUrl, QueryUtils.getRequestExecutor());
+    }
+
+    public FdsnEarthquakeSource(String name, String baseUrl, ResilientRequestExecutor requestExecutor) {
+        mName = name;
+        mBaseUrl = baseUrl;
+        mRequestExecutor = requestExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public String fetchResponse(Map<String, String> parameters, boolean forceRefresh) throws IOException {
+        return QueryUtils.fetchResponse(mRequestExecutor, buildUrl(parameters), forceRefresh);
+    }
+
+    @Override
+    public List<Earthquake> decode(String response) throws IOException {
+        return QueryUtils.parseEarthquakes(response);
+    }
+
+    public ResilientRequestExecutor.Stats getRequestStats() {
+        return mRequestExecutor.getStats();
+    }
+
+    // Value of the format parameter which selects the GeoJSON response
+    protected String getFormat() {
+        return "geojson";
+    }
+
+    private String buildUrl(Map<String, String> parameters) {
+        StringBuilder url = new StringBuilder(mBaseUrl).append("?format=").append(getFormat());
+
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            url.append('&').append(encode(parameter.getKey())).append('=').append(encode(parameter.getValue()));
+        }
+
+        return url.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
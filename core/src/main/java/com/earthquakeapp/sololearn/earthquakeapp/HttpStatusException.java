@@ -0,0 +1,25 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.IOException;
+
+// Thrown when the server answered, but not with a successful response code
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int mResponseCode;
+
+    public HttpStatusException(int responseCode) {
+        super("Error response code: " + responseCode);
+        mResponseCode = responseCode;
+    }
+
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    // Server errors and rate limiting usually go away on their own, client errors do not
+    public boolean isTransient() {
+        return mResponseCode >= 500 || mResponseCode == 429;
+    }
+}
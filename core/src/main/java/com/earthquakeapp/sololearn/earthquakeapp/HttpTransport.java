@@ -0,0 +1,70 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+// Makes a single plain HTTP GET request, retries and hedging are left to ResilientRequestExecutor
+public class HttpTransport implements ResilientRequestExecutor.Transport {
+
+    private final int mConnectTimeout;
+    private final int mReadTimeout;
+
+    public HttpTransport(int connectTimeout, int readTimeout) {
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    @Override
+    public String fetch(URL url) throws IOException {
+        HttpURLConnection urlConnection = null;
+        InputStream inputStream = null;
+
+        try {
+            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setReadTimeout(mReadTimeout);
+            urlConnection.setConnectTimeout(mConnectTimeout);
+            urlConnection.setRequestMethod("GET");
+            urlConnection.connect();
+
+            // If the request was successful, then read the input stream and return the response
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode != 200) {
+                throw new HttpStatusException(responseCode);
+            }
+
+            inputStream = urlConnection.getInputStream();
+            return readFromStream(inputStream);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+    }
+
+    // Convert the inputStream into a String which contains the whole response from the server
+    private static String readFromStream(InputStream inputStream) throws IOException {
+        // If a string is going to be modified then it is better to use StringBuilder
+        StringBuilder output = new StringBuilder();
+
+        if (inputStream != null) {
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+            BufferedReader reader = new BufferedReader(inputStreamReader);
+            String line = reader.readLine();
+
+            while (line != null) {
+                output.append(line);
+                line = reader.readLine();
+            }
+        }
+
+        return output.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.util.Arrays;
+
+// Keeps the most recent latency samples and answers percentile queries over them.
+// Samples may be in any unit, percentiles are returned in the same unit.
+public class LatencyTracker {
+
+    private final long[] mSamples;
+    private int mNext;
+    private int mSize;
+    private long mTotalCount;
+
+    public LatencyTracker(int capacity) {
+        mSamples = new long[capacity];
+    }
+
+    public synchronized void record(long latency) {
+        mSamples[mNext] = latency;
+        mNext = (mNext + 1) % mSamples.length;
+        mSize = Math.min(mSize + 1, mSamples.length);
+        mTotalCount++;
+    }
+
+    public synchronized void clear() {
+        mNext = 0;
+        mSize = 0;
+        mTotalCount = 0;
+    }
+
+    // Number of samples currently kept, older ones are overwritten
+    public synchronized int getSampleCount() {
+        return mSize;
+    }
+
+    // Number of samples ever recorded
+    public synchronized long getTotalCount() {
+        return mTotalCount;
+    }
+
+    // Return the latency below which the given fraction (i.e. 0.99) of the samples fall, or -1 without samples
+    public synchronized long getPercentile(double fraction) {
+        if (mSize == 0) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(mSamples, mSize);
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(fraction * mSize) - 1;
+        return sorted[Math.max(0, Math.min(mSize - 1, index))];
+    }
+}
@@ -0,0 +1,467 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Queries several earthquake sources in parallel and merges their answers into one stream, ordered
+// like the query asks for. Agencies report the same earthquake with their own ids and slightly
+// different origins, so events of different sources which are close in time and space are treated
+// as one, and the version of the source listed first wins.
+//
+// A source which fails only drops its own earthquakes, the query fails if all of them fail.
+public class MultiSourceCatalog {
+
+    private static final Logger LOGGER = Logger.getLogger(MultiSourceCatalog.class.getSimpleName());
+
+    // The association window of the USGS catalog for events of contributing networks
+    public static final long DEFAULT_TIME_TOLERANCE_MILLIS = 16000;
+    public static final double DEFAULT_DISTANCE_TOLERANCE_KM = 100;
+
+    private static final double EARTH_RADIUS_KM = 6371;
+    private static final int LATENCY_SAMPLES = 200;
+
+    private final List<EarthquakeSource> mSources;
+    private final List<SourceMetrics> mMetrics = new ArrayList<>();
+    private final long mTimeToleranceMillis;
+    private final double mDistanceToleranceKm;
+    private final ExecutorService mExecutor;
+
+    private final AtomicLong mDuplicateCount = new AtomicLong();
+
+    public MultiSourceCatalog(List<EarthquakeSource> sources) {
+        this(sources, DEFAULT_TIME_TOLERANCE_MILLIS, DEFAULT_DISTANCE_TOLERANCE_KM);
+    }
+
+    public MultiSourceCatalog(List<EarthquakeSource> sources, long timeToleranceMillis, double distanceToleranceKm) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("At least one source is needed");
+        }
+
+        mSources = new ArrayList<>(sources);
+        mTimeToleranceMillis = timeToleranceMillis;
+        mDistanceToleranceKm = distanceToleranceKm;
+
+        for (EarthquakeSource source : mSources) {
+            mMetrics.add(new SourceMetrics(source.getName()));
+        }
+
+        // Idle threads time out, so the catalog does not have to be shut down
+        mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "catalog-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public List<EarthquakeSource> getSources() {
+        return Collections.unmodifiableList(mSources);
+    }
+
+    // Query all the sources with the same FDSN parameters and return the merged earthquakes
+    public List<Earthquake> fetch(Map<String, String> parameters, boolean forceRefresh) throws IOException {
+        return decode(fetchResponses(parameters, forceRefresh), parameters);
+    }
+
+    // Query all the sources in parallel and return their raw responses in source order, null for
+    // the sources which failed. Decoding is left to the caller, so it can run on another thread.
+    public List<String> fetchResponses(Map<String, String> parameters, boolean forceRefresh) throws IOException {
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < mSources.size(); i++) {
+            futures.add(mExecutor.submit(newFetch(i, parameters, forceRefresh)));
+        }
+
+        List<String> results = new ArrayList<>();
+        IOException failure = null;
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "Problem fetching from " + mSources.get(i).getName(), e.getCause());
+                    results.add(null);
+
+                    if (failure == null) {
+                        failure = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching the sources", e);
+        }
+
+        if (failure != null && Collections.frequency(results, null) == results.size()) {
+            throw failure;
+        }
+
+        return results;
+    }
+
+    // Decode the responses of fetchResponses and merge them. A response which cannot be decoded only
+    // drops the earthquakes of its source.
+    public List<Earthquake> decode(List<String> responses, Map<String, String> parameters) {
+        List<List<Earthquake>> results = new ArrayList<>();
+
+        for (int i = 0; i < responses.size(); i++) {
+            if (responses.get(i) == null) {
+                results.add(null);
+                continue;
+            }
+
+            try {
+                List<Earthquake> earthquakes = mSources.get(i).decode(responses.get(i));
+                for (Earthquake earthquake : earthquakes) {
+                    earthquake.setSource(mSources.get(i).getName());
+                }
+                mMetrics.get(i).eventCount.addAndGet(earthquakes.size());
+                results.add(earthquakes);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Problem decoding the response of " + mSources.get(i).getName(), e);
+                mMetrics.get(i).decodeFailureCount.incrementAndGet();
+                results.add(null);
+            }
+        }
+
+        return merge(results, parameters);
+    }
+
+    // Drop the earthquakes of a decoded page which another source already listed earlier in the
+    // session, and add the remaining ones to the listed earthquakes. The merge only sees one page at
+    // a time, and the two versions of an event may land on different pages, in magnitude order even
+    // many pages apart. The version which was listed first stays.
+    public List<Earthquake> removeListedDuplicates(ListedEarthquakes listed, List<Earthquake> page) {
+        List<Earthquake> earthquakes = new ArrayList<>(page.size());
+        for (Earthquake earthquake : page) {
+            if (isListed(listed, earthquake)) {
+                mDuplicateCount.incrementAndGet();
+            } else {
+                earthquakes.add(earthquake);
+            }
+        }
+
+        for (Earthquake earthquake : earthquakes) {
+            listed.add(earthquake);
+        }
+
+        return earthquakes;
+    }
+
+    private boolean isListed(ListedEarthquakes listed, Earthquake earthquake) {
+        if (!earthquake.hasCoordinates()) {
+            return false;
+        }
+
+        long time = earthquake.getDateInMilliseconds();
+        for (List<Earthquake> others : listed.getWithin(time - mTimeToleranceMillis, time + mTimeToleranceMillis)) {
+            for (Earthquake other : others) {
+                // Events of the same source are distinct, even if they are close
+                if (!earthquake.getSource().equals(other.getSource()) && isNear(earthquake, other)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private Callable<String> newFetch(final int index, final Map<String, String> parameters,
+                                      final boolean forceRefresh) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                SourceMetrics metrics = mMetrics.get(index);
+                long start = System.nanoTime();
+
+                try {
+                    return mSources.get(index).fetchResponse(parameters, forceRefresh);
+                } catch (IOException | RuntimeException e) {
+                    metrics.fetchFailureCount.incrementAndGet();
+                    throw e;
+                } finally {
+                    metrics.requestCount.incrementAndGet();
+                    metrics.latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            }
+        };
+    }
+
+    // Merge the answers of the sources, null for the failed ones, in source order
+    List<Earthquake> merge(List<List<Earthquake>> results, Map<String, String> parameters) {
+        Comparator<Earthquake> order = getOrder(parameters.get("orderby"));
+        int limit = parseLimit(parameters.get("limit"));
+
+        // A source which returned a full page may have more earthquakes past its last one, which the
+        // next page brings. The merged page has to stop there, or it would skip them.
+        Earthquake bound = null;
+        for (List<Earthquake> earthquakes : results) {
+            if (earthquakes != null && !earthquakes.isEmpty() && earthquakes.size() >= limit) {
+                Earthquake last = earthquakes.get(earthquakes.size() - 1);
+                if (bound == null || order.compare(last, bound) < 0) {
+                    bound = last;
+                }
+            }
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                continue;
+            }
+
+            for (Earthquake earthquake : results.get(i)) {
+                if (bound == null || order.compare(earthquake, bound) <= 0) {
+                    candidates.add(new Candidate(earthquake, i));
+                }
+            }
+        }
+
+        List<Earthquake> merged = new ArrayList<>();
+        for (Candidate candidate : removeDuplicates(candidates)) {
+            merged.add(candidate.earthquake);
+        }
+
+        // The sort is stable, so earthquakes of the same time stay in source order
+        Collections.sort(merged, order);
+
+        return merged;
+    }
+
+    // Earthquakes are compared to the ones within the time tolerance only, so they are sorted by time first
+    private List<Candidate> removeDuplicates(List<Candidate> candidates) {
+        Collections.sort(candidates, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate first, Candidate second) {
+                return Long.compare(first.earthquake.getDateInMilliseconds(), second.earthquake.getDateInMilliseconds());
+            }
+        });
+
+        List<Candidate> unique = new ArrayList<>(candidates.size());
+
+        for (Candidate candidate : candidates) {
+            int duplicate = findDuplicate(unique, candidate);
+
+            if (duplicate < 0) {
+                unique.add(candidate);
+                continue;
+            }
+
+            mDuplicateCount.incrementAndGet();
+            if (candidate.sourceIndex < unique.get(duplicate).sourceIndex) {
+                unique.set(duplicate, candidate);
+            }
+        }
+
+        return unique;
+    }
+
+    private int findDuplicate(List<Candidate> unique, Candidate candidate) {
+        Earthquake earthquake = candidate.earthquake;
+        if (!earthquake.hasCoordinates()) {
+            return -1;
+        }
+
+        for (int i = unique.size() - 1; i >= 0; i--) {
+            Earthquake other = unique.get(i).earthquake;
+
+            if (earthquake.getDateInMilliseconds() - other.getDateInMilliseconds() > mTimeToleranceMillis) {
+                break;
+            }
+
+            // Events of the same source are distinct, even if they are close
+            if (unique.get(i).sourceIndex != candidate.sourceIndex && isNear(earthquake, other)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isNear(Earthquake first, Earthquake second) {
+        return first.hasCoordinates() && second.hasCoordinates()
+                && distanceKm(first, second) <= mDistanceToleranceKm;
+    }
+
+    // Great circle distance with the haversine formula
+    static double distanceKm(Earthquake first, Earthquake second) {
+        double latitude1 = Math.toRadians(first.getLatitude());
+        double latitude2 = Math.toRadians(second.getLatitude());
+        double deltaLatitude = latitude2 - latitude1;
+        double deltaLongitude = Math.toRadians(second.getLongitude() - first.getLongitude());
+
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(latitude1) * Math.cos(latitude2) * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static Comparator<Earthquake> getOrder(String orderBy) {
+        if ("magnitude".equals(orderBy)) {
+            return new Comparator<Earthquake>() {
+                @Override
+                public int compare(Earthquake first, Earthquake second) {
+                    // The newest first among the same magnitude, the order PageCursor pages through them
+                    int magnitude = Double.compare(second.getMagnitude(), first.getMagnitude());
+                    return magnitude != 0 ? magnitude
+                            : Long.compare(second.getDateInMilliseconds(), first.getDateInMilliseconds());
+                }
+            };
+        }
+
+        if ("time-asc".equals(orderBy)) {
+            return new Comparator<Earthquake>() {
+                @Override
+                public int compare(Earthquake first, Earthquake second) {
+                    return Long.compare(first.getDateInMilliseconds(), second.getDateInMilliseconds());
+                }
+            };
+        }
+
+        return new Comparator<Earthquake>() {
+            @Override
+            public int compare(Earthquake first, Earthquake second) {
+                return Long.compare(second.getDateInMilliseconds(), first.getDateInMilliseconds());
+            }
+        };
+    }
+
+    private static int parseLimit(String limit) {
+        try {
+            return limit == null ? Integer.MAX_VALUE : Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(this);
+    }
+
+    // The earthquakes listed so far in a session, by time, so that a new one is only compared with
+    // the few within the time tolerance. Not thread safe, a session decodes its pages on one thread.
+    public static class ListedEarthquakes {
+        private final TreeMap<Long, List<Earthquake>> mEarthquakesByTime = new TreeMap<>();
+
+        void add(Earthquake earthquake) {
+            // Earthquakes without coordinates are never near another one
+            if (!earthquake.hasCoordinates()) {
+                return;
+            }
+
+            List<Earthquake> earthquakes = mEarthquakesByTime.get(earthquake.getDateInMilliseconds());
+            if (earthquakes == null) {
+                earthquakes = new ArrayList<>(1);
+                mEarthquakesByTime.put(earthquake.getDateInMilliseconds(), earthquakes);
+            }
+            earthquakes.add(earthquake);
+        }
+
+        Collection<List<Earthquake>> getWithin(long from, long to) {
+            return mEarthquakesByTime.subMap(from, true, to, true).values();
+        }
+    }
+
+    private static class Candidate {
+        final Earthquake earthquake;
+        final int sourceIndex;
+
+        Candidate(Earthquake earthquake, int sourceIndex) {
+            this.earthquake = earthquake;
+            this.sourceIndex = sourceIndex;
+        }
+    }
+
+    private static class SourceMetrics {
+        final String name;
+        final AtomicLong requestCount = new AtomicLong();
+        final AtomicLong fetchFailureCount = new AtomicLong();
+        final AtomicLong decodeFailureCount = new AtomicLong();
+        final AtomicLong eventCount = new AtomicLong();
+        final LatencyTracker latencies = new LatencyTracker(LATENCY_SAMPLES);
+
+        SourceMetrics(String name) {
+            this.name = name;
+        }
+    }
+
+    // Snapshot of the request and latency counters of a single source
+    public static class SourceStats {
+        public final String name;
+        public final long requestCount;
+        // Requests which failed, and responses which came back but could not be decoded
+        public final long fetchFailureCount;
+        public final long decodeFailureCount;
+        public final long eventCount;
+        public final long p50LatencyMillis;
+        public final long p90LatencyMillis;
+        public final long p99LatencyMillis;
+
+        private SourceStats(SourceMetrics metrics) {
+            name = metrics.name;
+            requestCount = metrics.requestCount.get();
+            fetchFailureCount = metrics.fetchFailureCount.get();
+            decodeFailureCount = metrics.decodeFailureCount.get();
+            eventCount = metrics.eventCount.get();
+            p50LatencyMillis = metrics.latencies.getPercentile(0.5);
+            p90LatencyMillis = metrics.latencies.getPercentile(0.9);
+            p99LatencyMillis = metrics.latencies.getPercentile(0.99);
+        }
+
+        @Override
+        public String toString() {
+            return name + ": requests=" + requestCount + " fetchFailures=" + fetchFailureCount
+                    + " decodeFailures=" + decodeFailureCount + " events=" + eventCount
+                    + " p50=" + p50LatencyMillis + "ms p90=" + p90LatencyMillis + "ms p99=" + p99LatencyMillis + "ms";
+        }
+    }
+
+    public static class Stats {
+        public final List<SourceStats> sources;
+        public final long duplicateCount;
+
+        private Stats(MultiSourceCatalog catalog) {
+            List<SourceStats> sources = new ArrayList<>();
+            for (SourceMetrics metrics : catalog.mMetrics) {
+                sources.add(new SourceStats(metrics));
+            }
+
+            this.sources = Collections.unmodifiableList(sources);
+            duplicateCount = catalog.mDuplicateCount.get();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (SourceStats source : sources) {
+                text.append(source).append('\n');
+            }
+            return text.append("duplicates=").append(duplicateCount).toString();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+// Position after the last listed earthquake. Instead of skipping an offset, the next page is
+// queried up to the sort value of the last listed earthquake (its time, or its magnitude), so
+// earthquakes which are published in the meantime do not shift the pages.
+//
+// The bound of the service is inclusive, so the ids already listed at exactly the bound are
+// remembered, requested once more on top of the page size, and filtered out of the next page.
+//
+// Many earthquakes share a magnitude, so in magnitude order the time breaks the ties: the earthquakes
+// of the last magnitude of a full page are paged through by time, and only then the magnitudes below
+// it. This keeps the remembered ids to the few earthquakes at exactly the same time.
+public class PageCursor {
+
+    public static final String ORDER_BY_TIME = "time";
+    public static final String ORDER_BY_MAGNITUDE = "magnitude";
+
+    // Magnitudes are published with at most a few decimals, so nothing lies between a bound and
+    // the bound minus this step
+    private static final BigDecimal MAGNITUDE_STEP = new BigDecimal("0.000001");
+
+    private static final long NO_TIME_BOUND = Long.MAX_VALUE;
+
+    private final String mOrderBy;
+    private final boolean mFirstPage;
+    // Set while the earthquakes of exactly the magnitude bound are paged through by time
+    private final boolean mWithinMagnitude;
+    private final long mTimeBound;
+    private final double mMagnitudeBound;
+    private final Set<String> mIdsAtBound;
+
+    private PageCursor(String orderBy, boolean firstPage, boolean withinMagnitude, long timeBound,
+                       double magnitudeBound, Set<String> idsAtBound) {
+        mOrderBy = orderBy;
+        mFirstPage = firstPage;
+        mWithinMagnitude = withinMagnitude;
+        mTimeBound = timeBound;
+        mMagnitudeBound = magnitudeBound;
+        mIdsAtBound = idsAtBound;
+    }
+
+    public static PageCursor first(String orderBy) {
+        return new PageCursor(orderBy, true, false, NO_TIME_BOUND, 0, Collections.<String>emptySet());
+    }
+
+    public String getOrderBy() {
+        return mOrderBy;
+    }
+
+    public boolean isFirstPage() {
+        return mFirstPage;
+    }
+
+    // Return the query parameters of the page after this cursor, holding up to pageSize new earthquakes.
+    // They replace a "minmag" parameter of the query, the bound is never below it.
+    public Map<String, String> getQueryParameters(int pageSize) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("orderby", mWithinMagnitude ? ORDER_BY_TIME : mOrderBy);
+        parameters.put("limit", Integer.toString(pageSize + mIdsAtBound.size()));
+
+        if (mFirstPage) {
+            return parameters;
+        }
+
+        if (mWithinMagnitude) {
+            String magnitude = Double.toString(mMagnitudeBound);
+            parameters.put("minmag", magnitude);
+            parameters.put("maxmagnitude", magnitude);
+            if (mTimeBound != NO_TIME_BOUND) {
+                parameters.put("endtime", formatTime(mTimeBound));
+            }
+        } else if (isOrderedByMagnitude()) {
+            parameters.put("maxmagnitude",
+                    BigDecimal.valueOf(mMagnitudeBound).subtract(MAGNITUDE_STEP).toPlainString());
+        } else {
+            parameters.put("endtime", formatTime(mTimeBound));
+        }
+
+        return parameters;
+    }
+
+    // Return the earthquakes of the page to list: the ones which were not listed with the previous
+    // page, and on a full page ordered by magnitude, not the ones of its last magnitude. Those are
+    // listed by time with the pages after it.
+    public List<Earthquake> filter(List<Earthquake> page, int pageSize) {
+        List<Earthquake> earthquakes = dropListed(page);
+
+        if (isOrderedByMagnitude() && !mWithinMagnitude && page.size() >= pageSize) {
+            double magnitude = page.get(page.size() - 1).getMagnitude();
+            int end = earthquakes.size();
+            while (end > 0 && Double.compare(earthquakes.get(end - 1).getMagnitude(), magnitude) == 0) {
+                end--;
+            }
+            earthquakes = earthquakes.subList(0, end);
+        }
+
+        return earthquakes;
+    }
+
+    // True if the page, as returned by the service, shows that nothing comes after this cursor
+    public boolean isLastPage(List<Earthquake> page) {
+        if (mWithinMagnitude) {
+            // The lower magnitudes are still to come
+            return false;
+        }
+
+        return dropListed(page).isEmpty();
+    }
+
+    // Return the cursor after the page, as returned by the service. A page with less earthquakes than
+    // the limit held everything up to the end of its range.
+    public PageCursor next(List<Earthquake> page, int pageSize) {
+        if (isOrderedByMagnitude()) {
+            return nextByMagnitude(page, pageSize);
+        }
+
+        if (page.isEmpty()) {
+            return this;
+        }
+
+        Earthquake last = page.get(page.size() - 1);
+        return nextAtTime(page, last.getDateInMilliseconds(), false, last.getMagnitude());
+    }
+
+    private PageCursor nextByMagnitude(List<Earthquake> page, int pageSize) {
+        if (mWithinMagnitude) {
+            if (page.size() < pageSize + mIdsAtBound.size()) {
+                // No earthquakes of this magnitude are left, go on below it
+                return new PageCursor(mOrderBy, false, false, NO_TIME_BOUND, mMagnitudeBound,
+                        Collections.<String>emptySet());
+            }
+
+            Earthquake last = page.get(page.size() - 1);
+            return nextAtTime(page, last.getDateInMilliseconds(), true, mMagnitudeBound);
+        }
+
+        if (page.isEmpty()) {
+            return this;
+        }
+
+        double magnitude = page.get(page.size() - 1).getMagnitude();
+
+        // A full page may leave out earthquakes of its last magnitude, and filter left all of them
+        // for the pages which go through that magnitude by time
+        boolean full = page.size() >= pageSize;
+        return new PageCursor(mOrderBy, false, full, NO_TIME_BOUND, magnitude, Collections.<String>emptySet());
+    }
+
+    // Cursor at the time of the last earthquake of a page which is ordered by time
+    private PageCursor nextAtTime(List<Earthquake> page, long time, boolean withinMagnitude, double magnitude) {
+        Set<String> idsAtBound = new HashSet<>();
+
+        // Earthquakes at the old bound are still at the bound if the whole page shares it
+        if (!mFirstPage && time == mTimeBound) {
+            idsAtBound.addAll(mIdsAtBound);
+        }
+
+        for (Earthquake earthquake : page) {
+            if (earthquake.getDateInMilliseconds() == time) {
+                idsAtBound.add(earthquake.getId());
+            }
+        }
+
+        return new PageCursor(mOrderBy, false, withinMagnitude, time, magnitude, idsAtBound);
+    }
+
+    private List<Earthquake> dropListed(List<Earthquake> page) {
+        if (mIdsAtBound.isEmpty()) {
+            return page;
+        }
+
+        List<Earthquake> earthquakes = new ArrayList<>(page.size());
+        for (Earthquake earthquake : page) {
+            if (!mIdsAtBound.contains(earthquake.getId())) {
+                earthquakes.add(earthquake);
+            }
+        }
+
+        return earthquakes;
+    }
+
+    private boolean isOrderedByMagnitude() {
+        return ORDER_BY_MAGNITUDE.equals(mOrderBy);
+    }
+
+    // ISO 8601 in UTC with milliseconds, the precision of the event times
+    public static String formatTime(long timeInMilliseconds) {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        return timeFormat.format(timeInMilliseconds);
+    }
+}
@@ -0,0 +1,131 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// A stage of a staged pipeline: one dedicated worker thread which processes the items of its queue
+// in order and hands the results to the next stage. With a bounded queue a submit waits while the
+// queue is full, so a slow stage holds back the stages before it instead of letting work pile up.
+public class PipelineStage<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(PipelineStage.class.getSimpleName());
+
+    public interface Worker<T> {
+        // Return the item for the next stage, or null to drop it
+        T process(T item) throws InterruptedException;
+    }
+
+    private final String mName;
+    private final BlockingQueue<T> mQueue;
+    private final PipelineStage<T> mNext;
+    private final Worker<T> mWorker;
+    private final Thread mThread;
+
+    private volatile boolean mShutdown;
+
+    private final AtomicLong mProcessedCount = new AtomicLong();
+    private final AtomicLong mBusyNanos = new AtomicLong();
+
+    // A stage at the end of the pipeline
+    public PipelineStage(String name, int capacity, Worker<T> worker) {
+        this(name, capacity, null, worker);
+    }
+
+    // A capacity of zero or less makes the queue unbounded
+    public PipelineStage(String name, int capacity, PipelineStage<T> next, Worker<T> worker) {
+        mName = name;
+        mQueue = capacity > 0 ? new ArrayBlockingQueue<T>(capacity) : new LinkedBlockingQueue<T>();
+        mNext = next;
+        mWorker = worker;
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "pipeline-" + name);
+        mThread.setDaemon(true);
+    }
+
+    public void start() {
+        mThread.start();
+    }
+
+    // Wait for room in the queue and add the item
+    public void submit(T item) throws InterruptedException {
+        mQueue.put(item);
+    }
+
+    // Stop the worker, the items still queued are dropped
+    public void shutdown() {
+        mShutdown = true;
+        mThread.interrupt();
+        mQueue.clear();
+    }
+
+    private void work() {
+        while (!mShutdown) {
+            try {
+                T output = process(mQueue.take());
+
+                // Waiting for room in the next stage is not work of this one
+                if (output != null && mNext != null) {
+                    mNext.submit(output);
+                }
+            } catch (InterruptedException e) {
+                // Shut down, or the worker was interrupted and dropped its item
+            }
+        }
+    }
+
+    private T process(T item) throws InterruptedException {
+        long start = System.nanoTime();
+
+        try {
+            return mWorker.process(item);
+        } catch (RuntimeException e) {
+            // A broken item must not stop the pipeline
+            LOGGER.log(Level.SEVERE, "Problem processing an item in stage " + mName, e);
+            return null;
+        } finally {
+            mBusyNanos.addAndGet(System.nanoTime() - start);
+            mProcessedCount.incrementAndGet();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(this);
+    }
+
+    // Snapshot of the queue depth and the throughput of a stage
+    public static class Stats {
+        public final String name;
+        public final int queueDepth;
+        public final long processedCount;
+        public final long busyMillis;
+
+        private Stats(PipelineStage<?> stage) {
+            name = stage.mName;
+            queueDepth = stage.mQueue.size();
+            processedCount = stage.mProcessedCount.get();
+            busyMillis = TimeUnit.NANOSECONDS.toMillis(stage.mBusyNanos.get());
+        }
+
+        // Items per second of work, the time spent waiting for items does not count
+        public double getThroughput() {
+            return busyMillis == 0 ? 0 : processedCount * 1000.0 / busyMillis;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": queued=" + queueDepth + " processed=" + processedCount + " busy=" + busyMillis
+                    + "ms throughput=" + String.format(Locale.US, "%.1f", getThroughput()) + "/s";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Helper methods for getting data
+public class QueryUtils {
+
+    // Every attempt still gets the 15 s connect and 10 s read timeouts, but a slow attempt is
+    // hedged long before that and failed attempts are retried
+    private static volatile ResilientRequestExecutor sRequestExecutor =
+            new ResilientRequestExecutor(new HttpTransport(15000, 10000));
+
+    // New earthquakes land on the first page, deeper pages rarely change
+    private static final long FIRST_PAGE_TTL_MILLIS = 2 * 60 * 1000;
+    private static final long PAGE_TTL_MILLIS = 15 * 60 * 1000;
+
+    private static volatile ResponseCache sResponseCache;
+
+    // Features which could not be listed, e.g. events which are published before they get a magnitude
+    private static final AtomicLong sSkippedFeatureCount = new AtomicLong();
+
+    // Number of features left out of the parsed responses so far
+    public static long getSkippedFeatureCount() {
+        return sSkippedFeatureCount.get();
+    }
+
+    static void recordSkippedFeature() {
+        sSkippedFeatureCount.incrementAndGet();
+    }
+
+    // Return the hedging, retry and tail latency statistics of the requests made so far
+    public static ResilientRequestExecutor.Stats getRequestStats() {
+        return sRequestExecutor.getStats();
+    }
+
+    // The executor of the USGS requests, other hosts should get their own circuit breaker
+    public static ResilientRequestExecutor getRequestExecutor() {
+        return sRequestExecutor;
+    }
+
+    // Replace the executor of the USGS requests, i.e. so that a test does not inherit the circuit
+    // state, fallback responses and latencies of the previous one. Sources which were already
+    // created keep the executor they were given.
+    public static void setRequestExecutor(ResilientRequestExecutor requestExecutor) {
+        sRequestExecutor = requestExecutor;
+    }
+
+    // Serve repeated queries from the given cache, null disables caching
+    public static void setResponseCache(ResponseCache responseCache) {
+        sResponseCache = responseCache;
+    }
+
+    public static ResponseCache getResponseCache() {
+        return sResponseCache;
+    }
+
+    private static long getCacheTtlMillis(String requestUrl) {
+        // Pages after the first one are bounded by a PageCursor
+        boolean firstPage = getQueryParameter(requestUrl, "endtime") == null
+                && getQueryParameter(requestUrl, "maxmagnitude") == null;
+
+        return firstPage ? FIRST_PAGE_TTL_MILLIS : PAGE_TTL_MILLIS;
+    }
+
+    // Return the raw value of the query parameter, or null if the URL does not have it
+    private static String getQueryParameter(String requestUrl, String name) {
+        int queryStart = requestUrl.indexOf('?');
+        if (queryStart < 0) {
+            return null;
+        }
+
+        for (String parameter : requestUrl.substring(queryStart + 1).split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+
+        return null;
+    }
+
+    // Build an Earthquake object from a single GeoJSON feature, or return null if the feature
+    // cannot be listed because it has no magnitude or time yet
+    private static Earthquake parseFeature(JSONObject currentEarthquake) throws JSONException {
+        JSONObject properties = currentEarthquake.getJSONObject("properties");
+
+        if (properties.isNull("mag") || properties.isNull("time")) {
+            recordSkippedFeature();
+            return null;
+        }
+
+        double magnitude = properties.getDouble("mag");
+        long time = properties.getLong("time");
+        // Events far from any named place are published without one
+        String location = properties.isNull("place") ? "" : properties.getString("place");
+        String url = properties.isNull("url") ? "" : properties.getString("url");
+
+        // Revised events keep their id, but get a new update time
+        String id = currentEarthquake.optString("id", url);
+        long updated = properties.optLong("updated", time);
+
+        // GeoJSON coordinates are ordered as longitude, latitude and depth
+        double longitude = Double.NaN;
+        double latitude = Double.NaN;
+        double depth = Double.NaN;
+
+        JSONObject geometry = currentEarthquake.optJSONObject("geometry");
+        if (geometry != null) {
+            JSONArray coordinates = geometry.optJSONArray("coordinates");
+            if (coordinates != null && coordinates.length() >= 2) {
+                longitude = coordinates.getDouble(0);
+                latitude = coordinates.getDouble(1);
+                depth = coordinates.optDouble(2);
+            }
+        }
+
+        return new Earthquake(id, updated, magnitude, location, time, url, latitude, longitude, depth);
+    }
+
+    // Send a request and get a list of Earthquake objects. Failed requests and malformed responses
+    // are thrown, so batch jobs cannot mistake them for empty results.
+    public static List<Earthquake> fetchEarthquakes(String requestUrl) throws IOException {
+        return fetchEarthquakes(sRequestExecutor, requestUrl);
+    }
+
+    public static List<Earthquake> fetchEarthquakes(ResilientRequestExecutor requestExecutor, String requestUrl)
+            throws IOException {
+        return parseEarthquakes(requestExecutor.execute(new URL(requestUrl)));
+    }
+
+    // Send a request with the given executor and return the raw response. A recent response of the
+    // same query is served from the response cache, unless a refresh is forced. Failures are thrown.
+    public static String fetchResponse(ResilientRequestExecutor requestExecutor, String requestUrl,
+                                       boolean forceRefresh) throws IOException {
+        ResponseCache responseCache = sResponseCache;
+        String cacheKey = ResponseCache.normalizeKey(requestUrl);
+
+        if (responseCache != null && !forceRefresh) {
+            String cachedResponse = responseCache.get(cacheKey);
+            if (cachedResponse != null) {
+                return cachedResponse;
+            }
+        }
+
+        ResilientRequestExecutor.Response response = requestExecutor.executeForResponse(new URL(requestUrl));
+
+        // A stale fallback must not be stored again, a fresh time to live would pass it off as new
+        if (responseCache != null && !response.stale && !response.body.isEmpty()) {
+            responseCache.put(cacheKey, response.body, getCacheTtlMillis(requestUrl));
+        }
+
+        return response.body;
+    }
+
+    // Parse a GeoJSON response of the USGS service, malformed responses are thrown
+    public static List<Earthquake> parseEarthquakes(String jsonResponse) throws IOException {
+        List<Earthquake> earthquakes = new ArrayList<>();
+
+        try {
+            JSONArray earthquakeArray = new JSONObject(jsonResponse).getJSONArray("features");
+
+            for (int i = 0; i < earthquakeArray.length(); i++) {
+                Earthquake earthquake = parseFeature(earthquakeArray.getJSONObject(i));
+                if (earthquake != null) {
+                    earthquakes.add(earthquake);
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("Problem parsing the earthquake JSON results", e);
+        }
+
+        return earthquakes;
+    }
+}
@@ -0,0 +1,368 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Wraps a Transport with hedged requests, retries with jittered exponential backoff and a
+// circuit breaker. While the circuit is open the last good response of the same URL is served.
+public class ResilientRequestExecutor {
+
+    // Makes a single attempt of a request
+    public interface Transport {
+        String fetch(URL url) throws IOException;
+    }
+
+    private static final int LATENCY_SAMPLES = 200;
+    // Percentiles are meaningless with only a handful of samples
+    private static final int MIN_HEDGE_SAMPLES = 10;
+    private static final int FALLBACK_CACHE_SIZE = 32;
+
+    private final Transport mTransport;
+    private final ExecutorService mExecutor;
+    private final Random mRandom = new Random();
+
+    private final LatencyTracker mAttemptLatency = new LatencyTracker(LATENCY_SAMPLES);
+    private final LatencyTracker mRequestLatency = new LatencyTracker(LATENCY_SAMPLES);
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mHedgeCount = new AtomicLong();
+    private final AtomicLong mHedgeWinCount = new AtomicLong();
+    private final AtomicLong mRetryCount = new AtomicLong();
+    private final AtomicLong mFailureCount = new AtomicLong();
+    private final AtomicLong mFallbackCount = new AtomicLong();
+
+    // Last good response of every recently requested URL, used while the backend is unhealthy
+    private final Map<String, String> mFallbackCache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > FALLBACK_CACHE_SIZE;
+        }
+    };
+
+    private CircuitBreaker mCircuitBreaker = new CircuitBreaker(5, 30000);
+    private int mMaxAttempts = 3;
+    private long mBaseBackoffMillis = 250;
+    private long mMaxBackoffMillis = 4000;
+    private double mHedgePercentile = 0.95;
+    private long mMinHedgeDelayMillis = 50;
+    private long mDefaultHedgeDelayMillis = 2000;
+    private boolean mHedgingEnabled = true;
+    private boolean mFallbackEnabled = true;
+
+    public ResilientRequestExecutor(Transport transport) {
+        mTransport = transport;
+        mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "request-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // The setters below are meant to be called once, before the first request
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        mCircuitBreaker = circuitBreaker;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        mMaxAttempts = maxAttempts;
+    }
+
+    public void setBackoff(long baseBackoffMillis, long maxBackoffMillis) {
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    // A duplicate request is sent once the first one is slower than the given latency percentile
+    // of the recent attempts. Until enough samples are collected the default delay is used.
+    public void setHedging(double percentile, long minDelayMillis, long defaultDelayMillis) {
+        mHedgePercentile = percentile;
+        mMinHedgeDelayMillis = minDelayMillis;
+        mDefaultHedgeDelayMillis = defaultDelayMillis;
+    }
+
+    // Bulk downloads turn hedging off, a duplicate of a huge request doubles the load for little gain
+    public void setHedgingEnabled(boolean hedgingEnabled) {
+        mHedgingEnabled = hedgingEnabled;
+    }
+
+    // Without the fallback no responses are kept in memory, and a request which cannot be served
+    // fresh is thrown instead
+    public void setFallbackEnabled(boolean fallbackEnabled) {
+        mFallbackEnabled = fallbackEnabled;
+    }
+
+    public String execute(URL url) throws IOException {
+        return executeForResponse(url).body;
+    }
+
+    // Like execute, but tells whether the body is a stale fallback instead of a fresh response
+    public Response executeForResponse(URL url) throws IOException {
+        String key = url.toString();
+        long start = System.nanoTime();
+        mRequestCount.incrementAndGet();
+
+        IOException lastFailure = null;
+
+        for (int attempt = 0; attempt < mMaxAttempts; attempt++) {
+            if (!mCircuitBreaker.allowRequest()) {
+                break;
+            }
+
+            if (attempt > 0) {
+                mRetryCount.incrementAndGet();
+            }
+
+            // Every attempt has to report back to the circuit breaker, otherwise a half open
+            // circuit keeps waiting for the outcome of its trial request forever
+            boolean recorded = false;
+            try {
+                String response = executeHedged(url);
+                mCircuitBreaker.recordSuccess();
+                recorded = true;
+
+                if (mFallbackEnabled) {
+                    synchronized (mFallbackCache) {
+                        mFallbackCache.put(key, response);
+                    }
+                }
+
+                mRequestLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return new Response(response, false);
+            } catch (HttpStatusException e) {
+                // A client error says nothing about the health of the backend
+                if (!e.isTransient()) {
+                    mFailureCount.incrementAndGet();
+                    throw e;
+                }
+                lastFailure = e;
+                mCircuitBreaker.recordFailure();
+                recorded = true;
+            } catch (InterruptedIOException e) {
+                // A read timeout is an InterruptedIOException too, but unlike an interrupt it is
+                // a sign of a slow backend and goes through the retries like any other failure
+                if (!(e instanceof SocketTimeoutException) || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                lastFailure = e;
+                mCircuitBreaker.recordFailure();
+                recorded = true;
+            } catch (IOException e) {
+                lastFailure = e;
+                mCircuitBreaker.recordFailure();
+                recorded = true;
+            } finally {
+                if (!recorded) {
+                    mCircuitBreaker.recordNeutral();
+                }
+            }
+
+            if (attempt + 1 < mMaxAttempts) {
+                sleep(getBackoffMillis(attempt));
+            }
+        }
+
+        // Either the circuit is open or all attempts failed, fall back on the last good response
+        String fallback = null;
+        if (mFallbackEnabled) {
+            synchronized (mFallbackCache) {
+                fallback = mFallbackCache.get(key);
+            }
+        }
+
+        if (fallback != null) {
+            mFallbackCount.incrementAndGet();
+            return new Response(fallback, true);
+        }
+
+        mFailureCount.incrementAndGet();
+        if (lastFailure == null) {
+            lastFailure = new IOException("Circuit breaker is open, request to " + url.getHost() + " was not sent");
+        }
+        throw lastFailure;
+    }
+
+    // Send the request, and a duplicate of it if the first one takes unusually long.
+    // Whichever succeeds first wins, the other one is cancelled.
+    private String executeHedged(final URL url) throws IOException {
+        ExecutorCompletionService<String> completionService = new ExecutorCompletionService<>(mExecutor);
+        List<Future<String>> futures = new ArrayList<>(2);
+
+        Callable<String> request = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                long start = System.nanoTime();
+                String response = mTransport.fetch(url);
+                mAttemptLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return response;
+            }
+        };
+
+        try {
+            futures.add(completionService.submit(request));
+            int outstanding = 1;
+
+            Future<String> completed = null;
+
+            if (mHedgingEnabled) {
+                completed = completionService.poll(getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+
+                // Do not put extra load on a backend which is already failing
+                if (completed == null && mCircuitBreaker.getState() == CircuitBreaker.State.CLOSED) {
+                    mHedgeCount.incrementAndGet();
+                    futures.add(completionService.submit(request));
+                    outstanding++;
+                }
+            }
+
+            IOException failure = null;
+
+            while (outstanding > 0) {
+                if (completed == null) {
+                    completed = completionService.take();
+                }
+                outstanding--;
+
+                try {
+                    String response = completed.get();
+                    if (futures.size() > 1 && completed == futures.get(1)) {
+                        mHedgeWinCount.incrementAndGet();
+                    }
+                    return response;
+                } catch (ExecutionException e) {
+                    failure = toIOException(e.getCause());
+                }
+
+                completed = null;
+            }
+
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        } finally {
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private long getHedgeDelayMillis() {
+        if (mAttemptLatency.getSampleCount() < MIN_HEDGE_SAMPLES) {
+            return mDefaultHedgeDelayMillis;
+        }
+
+        return Math.max(mMinHedgeDelayMillis, mAttemptLatency.getPercentile(mHedgePercentile));
+    }
+
+    // "Full jitter" backoff, a random delay up to an exponentially growing cap, so that
+    // clients which failed together do not retry together
+    private long getBackoffMillis(int attempt) {
+        long cap = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << Math.min(attempt, 20));
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * cap);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during backoff");
+        }
+    }
+
+    private static IOException toIOException(Throwable throwable) {
+        if (throwable instanceof IOException) {
+            return (IOException) throwable;
+        }
+        return new IOException(throwable);
+    }
+
+    public Stats getStats() {
+        return new Stats(this);
+    }
+
+    // Body of a request, stale if it is the last good response served while the backend is unhealthy
+    public static class Response {
+        public final String body;
+        public final boolean stale;
+
+        private Response(String body, boolean stale) {
+            this.body = body;
+            this.stale = stale;
+        }
+    }
+
+    // Snapshot of the request statistics
+    public static class Stats {
+        public final long requestCount;
+        public final long hedgeCount;
+        public final long hedgeWinCount;
+        public final long retryCount;
+        public final long failureCount;
+        public final long fallbackCount;
+        public final int circuitTripCount;
+        public final CircuitBreaker.State circuitState;
+
+        // End-to-end latencies of successful requests including hedges and retries, -1 if unknown
+        public final long p50Millis;
+        public final long p90Millis;
+        public final long p99Millis;
+        public final long maxMillis;
+
+        // Latency of the single attempts, which drives the hedging delay
+        public final long attemptP95Millis;
+
+        private Stats(ResilientRequestExecutor executor) {
+            requestCount = executor.mRequestCount.get();
+            hedgeCount = executor.mHedgeCount.get();
+            hedgeWinCount = executor.mHedgeWinCount.get();
+            retryCount = executor.mRetryCount.get();
+            failureCount = executor.mFailureCount.get();
+            fallbackCount = executor.mFallbackCount.get();
+            circuitTripCount = executor.mCircuitBreaker.getTripCount();
+            circuitState = executor.mCircuitBreaker.getState();
+
+            p50Millis = executor.mRequestLatency.getPercentile(0.5);
+            p90Millis = executor.mRequestLatency.getPercentile(0.9);
+            p99Millis = executor.mRequestLatency.getPercentile(0.99);
+            maxMillis = executor.mRequestLatency.getPercentile(1);
+            attemptP95Millis = executor.mAttemptLatency.getPercentile(0.95);
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requestCount
+                    + " p50=" + p50Millis + "ms p90=" + p90Millis + "ms p99=" + p99Millis + "ms max=" + maxMillis + "ms"
+                    + " hedges=" + hedgeCount + " (won " + hedgeWinCount + ")"
+                    + " retries=" + retryCount
+                    + " failures=" + failureCount
+                    + " fallbacks=" + fallbackCount
+                    + " circuit=" + circuitState + " (tripped " + circuitTripCount + "x)";
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Disk cache of query responses. Every entry has its own time to live, bodies are stored gzip
+// compressed, and the least recently used entries are evicted once the files exceed the byte limit.
+public class ResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResponseCache.class.getSimpleName());
+
+    private static final int MAGIC = 0x52435631; // "RCV1"
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Query parameters of the FDSN event service which take numbers, only their values are
+    // canonicalized. Other values such as event ids are compared as they are.
+    private static final Set<String> NUMERIC_PARAMETERS = new HashSet<>(Arrays.asList(
+            "minmag", "minmagnitude", "maxmag", "maxmagnitude", "limit", "offset",
+            "latitude", "longitude", "lat", "lon", "minlatitude", "maxlatitude", "minlongitude",
+            "maxlongitude", "maxradius", "maxradiuskm", "mindepth", "maxdepth"));
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // File name to entry, in least recently used order
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mTotalBytes;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mExpiredCount;
+    private long mEvictionCount;
+
+    public ResponseCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            LOGGER.warning("Could not create the cache directory " + mDirectory);
+        }
+
+        loadEntries();
+    }
+
+    // Turn a query URL into a cache key which does not depend on the order of the query parameters
+    // or on how numbers are written, so "minmag=6&orderby=time" and "orderby=time&minmag=6.0" match.
+    // The scheme and the port are part of the key, two servers on the same host do not share entries.
+    public static String normalizeKey(String requestUrl) {
+        URL url;
+        try {
+            url = new URL(requestUrl);
+        } catch (MalformedURLException e) {
+            return requestUrl;
+        }
+
+        List<String> parameters = new ArrayList<>();
+        if (url.getQuery() != null) {
+            for (String parameter : url.getQuery().split("&")) {
+                if (parameter.isEmpty()) {
+                    continue;
+                }
+
+                int separator = parameter.indexOf('=');
+                String name = decode(separator < 0 ? parameter : parameter.substring(0, separator));
+                String value = separator < 0 ? "" : decode(parameter.substring(separator + 1));
+
+                name = name.toLowerCase();
+                parameters.add(name + "=" + (NUMERIC_PARAMETERS.contains(name) ? normalizeNumber(value) : value));
+            }
+        }
+
+        Collections.sort(parameters);
+
+        StringBuilder key = new StringBuilder(url.getProtocol().toLowerCase())
+                .append("://").append(url.getHost().toLowerCase());
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            key.append(':').append(url.getPort());
+        }
+        key.append(url.getPath()).append('?');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                key.append('&');
+            }
+            key.append(parameters.get(i));
+        }
+
+        return key.toString();
+    }
+
+    // Return the cached response of the key, or null if there is none or it has expired. Only the
+    // index is looked up under the lock, the file is read and decompressed outside of it.
+    public String get(String key) {
+        String fileName = getFileName(key);
+        Entry entry;
+
+        synchronized (this) {
+            entry = mEntries.get(fileName);
+
+            if (entry == null) {
+                mMissCount++;
+                return null;
+            }
+
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                mMissCount++;
+                mExpiredCount++;
+                remove(fileName);
+                return null;
+            }
+        }
+
+        File file = new File(mDirectory, fileName);
+        String response = null;
+        IOException failure = null;
+        try {
+            response = read(file, key);
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        synchronized (this) {
+            if (response == null) {
+                mMissCount++;
+
+                // Unless the entry was evicted or replaced while its file was read
+                if (mEntries.get(fileName) == entry) {
+                    if (failure != null) {
+                        LOGGER.log(Level.WARNING, "Problem reading the cached response", failure);
+                    }
+                    remove(fileName);
+                }
+                return null;
+            }
+
+            mHitCount++;
+        }
+
+        // Keeps the least recently used order across restarts
+        file.setLastModified(System.currentTimeMillis());
+
+        return response;
+    }
+
+    // The response is compressed and written to a temporary file outside the lock, only the rename
+    // which publishes it and the index update are done under the lock
+    public void put(String key, String response, long ttlMillis) {
+        String fileName = getFileName(key);
+        File file = new File(mDirectory, fileName);
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+
+        File tempFile = null;
+        long bytes;
+        try {
+            // Concurrent puts of the same key each get their own temporary file
+            tempFile = File.createTempFile(fileName, TEMP_SUFFIX, mDirectory);
+            write(tempFile, key, expiresAt, response);
+            bytes = tempFile.length();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Problem writing the response to the cache", e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return;
+        }
+
+        synchronized (this) {
+            if (!tempFile.renameTo(file)) {
+                LOGGER.warning("Could not rename " + tempFile);
+                tempFile.delete();
+                return;
+            }
+
+            Entry previous = mEntries.put(fileName, new Entry(bytes, expiresAt));
+            if (previous != null) {
+                mTotalBytes -= previous.bytes;
+            }
+            mTotalBytes += bytes;
+
+            evict();
+        }
+    }
+
+    public synchronized void clear() {
+        for (String fileName : new ArrayList<>(mEntries.keySet())) {
+            remove(fileName);
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(mHitCount, mMissCount, mExpiredCount, mEvictionCount, mEntries.size(), mTotalBytes);
+    }
+
+    // Drop the least recently used entries until the files fit into the byte limit again
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+
+        while (mTotalBytes > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            iterator.remove();
+
+            mTotalBytes -= eldest.getValue().bytes;
+            mEvictionCount++;
+            new File(mDirectory, eldest.getKey()).delete();
+        }
+    }
+
+    private void remove(String fileName) {
+        Entry entry = mEntries.remove(fileName);
+        if (entry != null) {
+            mTotalBytes -= entry.bytes;
+        }
+        new File(mDirectory, fileName).delete();
+    }
+
+    // Rebuild the index from the files of a previous run, the oldest files are evicted first
+    private void loadEntries() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+
+            try {
+                long expiresAt = readExpiry(file);
+                mEntries.put(file.getName(), new Entry(file.length(), expiresAt));
+                mTotalBytes += file.length();
+            } catch (IOException e) {
+                file.delete();
+            }
+        }
+
+        evict();
+    }
+
+    private static void write(File file, String key, long expiresAt, String response) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try {
+            output.writeInt(MAGIC);
+            output.writeUTF(key);
+            output.writeLong(expiresAt);
+
+            GZIPOutputStream gzipOutput = new GZIPOutputStream(output);
+            gzipOutput.write(response.getBytes(UTF_8));
+            gzipOutput.finish();
+        } finally {
+            output.close();
+        }
+    }
+
+    // Return the response stored in the file, or null if the file belongs to another key
+    private static String read(File file, String key) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (input.readInt() != MAGIC || !key.equals(input.readUTF())) {
+                return null;
+            }
+            input.readLong();
+
+            InputStream gzipInput = new GZIPInputStream(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzipInput.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+
+            return new String(output.toByteArray(), UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static long readExpiry(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a cache file: " + file);
+            }
+            input.readUTF();
+            return input.readLong();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String getFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder fileName = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                fileName.append(String.format("%02x", b));
+            }
+            return fileName.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String normalizeNumber(String value) {
+        try {
+            BigDecimal number = new BigDecimal(value.trim());
+            // "6.0" and "6" are the same magnitude, but stripping the zeros of "0.0" gives "0E-1"
+            return number.signum() == 0 ? "0" : number.stripTrailingZeros().toPlainString();
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static class Entry {
+        final long bytes;
+        final long expiresAt;
+
+        Entry(long bytes, long expiresAt) {
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Snapshot of the cache counters
+    public static class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long expiredCount;
+        public final long evictionCount;
+        public final int entryCount;
+        public final long totalBytes;
+
+        private Stats(long hitCount, long missCount, long expiredCount, long evictionCount, int entryCount, long totalBytes) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.expiredCount = expiredCount;
+            this.evictionCount = evictionCount;
+            this.entryCount = entryCount;
+            this.totalBytes = totalBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hitCount + " misses=" + missCount + " (expired " + expiredCount + ")"
+                    + " evictions=" + evictionCount + " entries=" + entryCount + " bytes=" + totalBytes;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class EarthquakePipelineTest {
+
+    // 2018-10-19T05:20:00Z
+    private static final long TIME = 1539926400000L;
+
+    private static final int PAGE_SIZE = 10;
+
+    // Stands in for the main thread of the app
+    private final ExecutorService mMainThread = Executors.newSingleThreadExecutor();
+
+    private final BlockingQueue<EarthquakePipeline.Page> mDeliveredPages = new LinkedBlockingQueue<>();
+    private final EarthquakePipeline.Listener mListener = new EarthquakePipeline.Listener() {
+        @Override
+        public void onPageDelivered(EarthquakePipeline.Page page) {
+            mDeliveredPages.add(page);
+        }
+    };
+
+    private FakeSource mSource;
+    private EarthquakePipeline mPipeline;
+
+    @Before
+    public void setUp() throws Exception {
+        mSource = new FakeSource(100);
+        mPipeline = newPipeline(new RowFormatter());
+
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mPipeline.setListener(mListener);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mPipeline.shutdown();
+        mMainThread.shutdownNow();
+    }
+
+    @Test
+    public void pages_areFetchedOneAheadOfTheRequestedOnes() throws Exception {
+        start();
+
+        EarthquakePipeline.Page first = takePage();
+        assertEquals(0, first.getIndex());
+        assertEquals(PAGE_SIZE, first.getInsertedRows().size());
+
+        // The second page is fetched ahead, but neither delivered nor followed by a third one
+        awaitFetchCount(2);
+        assertNull(mDeliveredPages.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(2, mSource.mFetchCount.get());
+
+        requestPage();
+        assertEquals(1, takePage().getIndex());
+        awaitFetchCount(3);
+        Thread.sleep(200);
+        assertEquals(3, mSource.mFetchCount.get());
+    }
+
+    @Test
+    public void lastPage_endsTheSession() throws Exception {
+        mSource = new FakeSource(15);
+        mPipeline.shutdown();
+        mPipeline = newPipeline(new RowFormatter());
+        setListener(mListener);
+
+        start();
+        assertEquals(PAGE_SIZE, takePage().getInsertedRows().size());
+
+        requestPage();
+        assertEquals(5, takePage().getInsertedRows().size());
+
+        requestPage();
+        EarthquakePipeline.Page last = takePage();
+        assertTrue(last.isLast());
+        assertTrue(last.getInsertedRows().isEmpty());
+        assertFalse(mPipeline.isLoading());
+    }
+
+    @Test
+    public void cancel_interruptsTheFetch() throws Exception {
+        mSource.mBlockNextFetch = true;
+        start();
+        assertTrue(mSource.mFetchStarted.await(5, TimeUnit.SECONDS));
+
+        mPipeline.cancel();
+        assertTrue(mSource.mFetchInterrupted.await(5, TimeUnit.SECONDS));
+
+        // The fetch thread goes on with the next session
+        EarthquakePipeline.Session session = start();
+        EarthquakePipeline.Page page = takePage();
+        assertSame(session, page.getSession());
+        assertEquals(PAGE_SIZE, page.getInsertedRows().size());
+    }
+
+    @Test
+    public void pagesOfACancelledSession_areDropped() throws Exception {
+        RowFormatter formatter = new RowFormatter();
+        formatter.mBlockNextFormat = true;
+        mPipeline.shutdown();
+        mPipeline = newPipeline(formatter);
+        setListener(mListener);
+
+        EarthquakePipeline.Session cancelled = start();
+        assertTrue(formatter.mFormatStarted.await(5, TimeUnit.SECONDS));
+
+        // The first page of the cancelled session is past its fetch, the later stages drop it
+        EarthquakePipeline.Session session = start();
+        assertTrue(cancelled.isCancelled());
+        formatter.mReleaseFormat.countDown();
+
+        EarthquakePipeline.Page page = takePage();
+        assertSame(session, page.getSession());
+        assertEquals(0, page.getIndex());
+        assertNull(mDeliveredPages.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void pagesWithoutListener_areDeliveredToTheNextOne() throws Exception {
+        // The activity detaches while it is recreated, i.e. on a rotation
+        setListener(null);
+        start();
+
+        awaitFetchCount(2);
+        Thread.sleep(200);
+        assertTrue(mDeliveredPages.isEmpty());
+
+        setListener(mListener);
+        EarthquakePipeline.Page page = takePage();
+        assertEquals(0, page.getIndex());
+        assertEquals(PAGE_SIZE, page.getInsertedRows().size());
+    }
+
+    private EarthquakePipeline newPipeline(EarthquakePipeline.Formatter formatter) {
+        MultiSourceCatalog catalog = new MultiSourceCatalog(Collections.<EarthquakeSource>singletonList(mSource));
+        return new EarthquakePipeline(formatter, catalog, mMainThread);
+    }
+
+    private EarthquakePipeline.Session start() throws Exception {
+        final EarthquakePipeline.Session[] session = new EarthquakePipeline.Session[1];
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                session[0] = mPipeline.start(PageCursor.first(PageCursor.ORDER_BY_TIME),
+                        new LinkedHashMap<String, String>(), PAGE_SIZE, false, new HashMap<String, Long>(), false);
+            }
+        });
+        return session[0];
+    }
+
+    private void requestPage() throws Exception {
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mPipeline.requestPage();
+            }
+        });
+    }
+
+    private void setListener(final EarthquakePipeline.Listener listener) throws Exception {
+        onMainThread(new Runnable() {
+            @Override
+            public void run() {
+                mPipeline.setListener(listener);
+            }
+        });
+    }
+
+    private void onMainThread(Runnable runnable) throws InterruptedException, ExecutionException {
+        mMainThread.submit(runnable).get();
+    }
+
+    private EarthquakePipeline.Page takePage() throws InterruptedException {
+        EarthquakePipeline.Page page = mDeliveredPages.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No page was delivered", page);
+        return page;
+    }
+
+    private void awaitFetchCount(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mSource.mFetchCount.get() < count) {
+            assertTrue("Only " + mSource.mFetchCount.get() + " pages were fetched",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    // Answers time ordered queries from a list of earthquakes, one a minute
+    private static class FakeSource implements EarthquakeSource {
+        final List<Earthquake> mEarthquakes = new ArrayList<>();
+        final Map<String, Earthquake> mEarthquakesById = new HashMap<>();
+
+        final AtomicInteger mFetchCount = new AtomicInteger();
+        volatile boolean mBlockNextFetch;
+        final CountDownLatch mFetchStarted = new CountDownLatch(1);
+        final CountDownLatch mFetchInterrupted = new CountDownLatch(1);
+
+        FakeSource(int count) {
+            for (int i = 0; i < count; i++) {
+                Earthquake earthquake = new Earthquake("ev" + i, TIME, 5.0, "Somewhere", TIME - 60000L * i, "",
+                        10.0 * i / count, 0, 10);
+                mEarthquakes.add(earthquake);
+                mEarthquakesById.put(earthquake.getId(), earthquake);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "FAKE";
+        }
+
+        @Override
+        public String fetchResponse(Map<String, String> parameters, boolean forceRefresh) throws IOException {
+            if (mBlockNextFetch) {
+                mBlockNextFetch = false;
+                mFetchStarted.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    mFetchInterrupted.countDown();
+                    throw new InterruptedIOException("Interrupted");
+                }
+            }
+            mFetchCount.incrementAndGet();
+
+            int limit = Integer.parseInt(parameters.get("limit"));
+            String endTime = parameters.get("endtime");
+
+            StringBuilder response = new StringBuilder();
+            int count = 0;
+            for (Earthquake earthquake : mEarthquakes) {
+                if (count == limit) {
+                    break;
+                }
+                if (endTime == null
+                        || PageCursor.formatTime(earthquake.getDateInMilliseconds()).compareTo(endTime) <= 0) {
+                    response.append(earthquake.getId()).append(',');
+                    count++;
+                }
+            }
+
+            return response.toString();
+        }
+
+        @Override
+        public List<Earthquake> decode(String response) {
+            List<Earthquake> earthquakes = new ArrayList<>();
+            for (String id : response.split(",")) {
+                if (!id.isEmpty()) {
+                    earthquakes.add(mEarthquakesById.get(id));
+                }
+            }
+            return earthquakes;
+        }
+    }
+
+    private static class RowFormatter implements EarthquakePipeline.Formatter {
+        volatile boolean mBlockNextFormat;
+        final CountDownLatch mFormatStarted = new CountDownLatch(1);
+        final CountDownLatch mReleaseFormat = new CountDownLatch(1);
+
+        @Override
+        public EarthquakeRow format(Earthquake earthquake) {
+            if (mBlockNextFormat) {
+                mBlockNextFormat = false;
+                mFormatStarted.countDown();
+                try {
+                    mReleaseFormat.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new EarthquakeRow(earthquake, "5.0", 0, "", earthquake.getLocation(), "", "");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local HTTP server which answers every request with a fixed body, unless a fault was queued for it
+public class FaultInjectingServer {
+
+    public static class Fault {
+        final long delayMillis;
+        final int responseCode;
+        final boolean drop;
+
+        private Fault(long delayMillis, int responseCode, boolean drop) {
+            this.delayMillis = delayMillis;
+            this.responseCode = responseCode;
+            this.drop = drop;
+        }
+
+        public static Fault delay(long delayMillis) {
+            return new Fault(delayMillis, 200, false);
+        }
+
+        public static Fault status(int responseCode) {
+            return new Fault(0, responseCode, false);
+        }
+
+        // Close the connection without sending a response
+        public static Fault drop() {
+            return new Fault(0, 0, true);
+        }
+    }
+
+    private final HttpServer mServer;
+    private final String mBody;
+    private final ConcurrentLinkedQueue<Fault> mFaults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    public FaultInjectingServer(String body) throws IOException {
+        mBody = body;
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestCount.incrementAndGet();
+                Fault fault = mFaults.poll();
+
+                try {
+                    if (fault != null && fault.delayMillis > 0) {
+                        Thread.sleep(fault.delayMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                if (fault != null && fault.drop) {
+                    exchange.close();
+                    return;
+                }
+
+                int responseCode = fault != null ? fault.responseCode : 200;
+                byte[] bytes = mBody.getBytes(Charset.forName("UTF-8"));
+                exchange.sendResponseHeaders(responseCode, bytes.length);
+                OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(bytes);
+                outputStream.close();
+            }
+        });
+        mServer.start();
+    }
+
+    // Faults are consumed by the following requests in the order they were queued
+    public void enqueue(Fault fault) {
+        mFaults.add(fault);
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + "/fdsnws/event/1/query");
+    }
+
+    public void shutdown() {
+        mServer.stop(0);
+    }
+}
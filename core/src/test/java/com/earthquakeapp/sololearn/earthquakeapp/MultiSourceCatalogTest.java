@@ -0,0 +1,252 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MultiSourceCatalogTest {
+
+    // 2018-10-19T05:20:00Z
+    private static final long TIME = 1539926400000L;
+
+    private FaultInjectingServer mUsgsServer;
+    private FaultInjectingServer mEmscServer;
+
+    @Before
+    public void setUp() {
+        QueryUtils.setResponseCache(null);
+    }
+
+    @After
+    public void tearDown() {
+        if (mUsgsServer != null) {
+            mUsgsServer.shutdown();
+        }
+        if (mEmscServer != null) {
+            mEmscServer.shutdown();
+        }
+    }
+
+    @Test
+    public void sameEarthquake_isListedOnceFromTheFirstSource() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs(
+                usgsFeature("us1", 6.1, TIME, 38.30, 142.37),
+                usgsFeature("us2", 5.0, TIME - 60000, 10.0, 20.0)));
+        // Four seconds and about 20 km off the first USGS event
+        mEmscServer = new FaultInjectingServer(emsc(
+                emscFeature("em1", 6.0, "2018-10-19T05:20:04.0Z", 38.45, 142.30),
+                emscFeature("em2", 4.8, "2018-10-19T05:19:30.5Z", -30.0, -70.0)));
+
+        MultiSourceCatalog catalog = newCatalog(MultiSourceCatalog.DEFAULT_TIME_TOLERANCE_MILLIS,
+                MultiSourceCatalog.DEFAULT_DISTANCE_TOLERANCE_KM);
+        List<Earthquake> earthquakes = catalog.fetch(parameters("time", 20), false);
+
+        assertEquals(Arrays.asList("us1", "em2", "us2"), getIds(earthquakes));
+        assertEquals(TIME - 29500, earthquakes.get(1).getDateInMilliseconds());
+        assertEquals(1, catalog.getStats().duplicateCount);
+    }
+
+    @Test
+    public void eventsOutsideTheTolerances_areKept() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs(usgsFeature("us1", 6.1, TIME, 38.30, 142.37)));
+        mEmscServer = new FaultInjectingServer(emsc(emscFeature("em1", 6.0, "2018-10-19T05:20:04.0Z", 38.45, 142.30)));
+
+        MultiSourceCatalog catalog = newCatalog(2000, MultiSourceCatalog.DEFAULT_DISTANCE_TOLERANCE_KM);
+
+        assertEquals(Arrays.asList("em1", "us1"), getIds(catalog.fetch(parameters("time", 20), false)));
+        assertEquals(0, catalog.getStats().duplicateCount);
+    }
+
+    @Test
+    public void fullPage_cutsTheMergeAtItsLastEarthquake() throws IOException {
+        // The USGS page is full, so earthquakes older than its last one may still be missing from it
+        mUsgsServer = new FaultInjectingServer(usgs(
+                usgsFeature("us1", 5.0, TIME, 0, 0),
+                usgsFeature("us2", 5.0, TIME - 60000, 0, 10)));
+        mEmscServer = new FaultInjectingServer(emsc(
+                emscFeature("em1", 5.0, "2018-10-19T05:19:30.0Z", 20, 20),
+                emscFeature("em2", 5.0, "2018-10-19T05:10:00.0Z", 20, 20)));
+
+        List<Earthquake> earthquakes = newCatalog(1000, 10).fetch(parameters("time", 2), false);
+
+        assertEquals(Arrays.asList("us1", "em1", "us2"), getIds(earthquakes));
+    }
+
+    @Test
+    public void failedSource_onlyDropsItsOwnEarthquakes() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs(usgsFeature("us1", 6.1, TIME, 38.30, 142.37)));
+        mEmscServer = new FaultInjectingServer(emsc());
+        mEmscServer.enqueue(FaultInjectingServer.Fault.status(400));
+
+        MultiSourceCatalog catalog = newCatalog(1000, 10);
+
+        assertEquals(Arrays.asList("us1"), getIds(catalog.fetch(parameters("magnitude", 20), false)));
+
+        MultiSourceCatalog.SourceStats emscStats = catalog.getStats().sources.get(1);
+        assertEquals("EMSC", emscStats.name);
+        assertEquals(1, emscStats.requestCount);
+        assertEquals(1, emscStats.fetchFailureCount);
+        assertEquals(0, emscStats.decodeFailureCount);
+        assertTrue(catalog.getStats().sources.get(0).p50LatencyMillis >= 0);
+    }
+
+    @Test
+    public void undecodableResponse_countsAsDecodeFailure() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs());
+        mEmscServer = new FaultInjectingServer(emsc());
+
+        MultiSourceCatalog catalog = newCatalog(1000, 10);
+        List<Earthquake> earthquakes = catalog.decode(
+                Arrays.asList(usgs(usgsFeature("us1", 6.1, TIME, 38.30, 142.37)), "<html>Maintenance</html>"),
+                parameters("time", 20));
+
+        assertEquals(Arrays.asList("us1"), getIds(earthquakes));
+        assertEquals("USGS", earthquakes.get(0).getSource());
+
+        MultiSourceCatalog.SourceStats emscStats = catalog.getStats().sources.get(1);
+        assertEquals(0, emscStats.fetchFailureCount);
+        assertEquals(1, emscStats.decodeFailureCount);
+    }
+
+    @Test
+    public void duplicateAcrossThePageCut_isListedOnce() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs());
+        mEmscServer = new FaultInjectingServer(emsc());
+
+        MultiSourceCatalog catalog = newCatalog(MultiSourceCatalog.DEFAULT_TIME_TOLERANCE_MILLIS,
+                MultiSourceCatalog.DEFAULT_DISTANCE_TOLERANCE_KM);
+
+        // The full USGS page ends with us1, so the EMSC version of it, four seconds older, is cut
+        // off to the next page
+        List<Earthquake> firstPage = catalog.decode(Arrays.asList(
+                usgs(usgsFeature("us1", 6.1, TIME, 38.30, 142.37)),
+                emsc(emscFeature("em0", 5.0, "2018-10-19T05:25:00.0Z", 0, 0),
+                        emscFeature("em1", 6.0, "2018-10-19T05:19:56.0Z", 38.45, 142.30))),
+                parameters("time", 1));
+        assertEquals(Arrays.asList("em0", "us1"), getIds(firstPage));
+
+        List<Earthquake> secondPage = catalog.decode(Arrays.asList(
+                usgs(usgsFeature("us2", 5.0, TIME - 60000, 10.0, 20.0)),
+                emsc(emscFeature("em1", 6.0, "2018-10-19T05:19:56.0Z", 38.45, 142.30))),
+                parameters("time", 2));
+        assertEquals(Arrays.asList("em1", "us2"), getIds(secondPage));
+
+        MultiSourceCatalog.ListedEarthquakes listed = new MultiSourceCatalog.ListedEarthquakes();
+        assertEquals(firstPage, catalog.removeListedDuplicates(listed, firstPage));
+        assertEquals(Arrays.asList("us2"), getIds(catalog.removeListedDuplicates(listed, secondPage)));
+        assertEquals(1, catalog.getStats().duplicateCount);
+    }
+
+    @Test
+    public void duplicatePagesApartInMagnitudeOrder_isListedOnce() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs());
+        mEmscServer = new FaultInjectingServer(emsc());
+
+        MultiSourceCatalog catalog = newCatalog(MultiSourceCatalog.DEFAULT_TIME_TOLERANCE_MILLIS,
+                MultiSourceCatalog.DEFAULT_DISTANCE_TOLERANCE_KM);
+        MultiSourceCatalog.ListedEarthquakes listed = new MultiSourceCatalog.ListedEarthquakes();
+
+        // USGS rates the earthquake M6.1, EMSC only M5.2, so the two versions are three pages apart
+        List<Earthquake> firstPage = catalog.decode(Arrays.asList(
+                usgs(usgsFeature("us1", 6.1, TIME, 38.30, 142.37)),
+                emsc(emscFeature("em0", 6.0, "2018-10-19T02:00:00.0Z", 0, 0))),
+                parameters("magnitude", 2));
+        assertEquals(Arrays.asList("us1", "em0"), getIds(catalog.removeListedDuplicates(listed, firstPage)));
+
+        for (int i = 0; i < 2; i++) {
+            long time = TIME - 3600000L * (i + 1);
+            List<Earthquake> page = catalog.decode(Arrays.asList(
+                    usgs(usgsFeature("us" + (i + 2), 5.8 - i / 10.0, time, 10.0, 20.0)), emsc()),
+                    parameters("magnitude", 1));
+            assertEquals(1, catalog.removeListedDuplicates(listed, page).size());
+        }
+
+        List<Earthquake> lastPage = catalog.decode(Arrays.asList(
+                usgs(usgsFeature("us4", 5.2, TIME - 86400000L, -20.0, -70.0)),
+                emsc(emscFeature("em1", 5.2, "2018-10-19T05:20:06.0Z", 38.41, 142.31))),
+                parameters("magnitude", 2));
+        assertEquals(Arrays.asList("us4"), getIds(catalog.removeListedDuplicates(listed, lastPage)));
+        assertEquals(1, catalog.getStats().duplicateCount);
+    }
+
+    @Test
+    public void allSourcesFailing_isThrown() throws IOException {
+        mUsgsServer = new FaultInjectingServer(usgs());
+        mEmscServer = new FaultInjectingServer(emsc());
+        mUsgsServer.enqueue(FaultInjectingServer.Fault.status(400));
+        mEmscServer.enqueue(FaultInjectingServer.Fault.status(404));
+
+        try {
+            newCatalog(1000, 10).fetch(parameters("time", 20), false);
+            fail("Expected the failure to be thrown");
+        } catch (HttpStatusException e) {
+            assertTrue(e.getResponseCode() == 400 || e.getResponseCode() == 404);
+        }
+    }
+
+    private MultiSourceCatalog newCatalog(long timeToleranceMillis, double distanceToleranceKm) throws IOException {
+        EarthquakeSource usgs = new FdsnEarthquakeSource("USGS", mUsgsServer.getUrl().toString(),
+                new ResilientRequestExecutor(new HttpTransport(1000, 1000)));
+        EarthquakeSource emsc = new EmscEarthquakeSource(mEmscServer.getUrl().toString(),
+                new ResilientRequestExecutor(new HttpTransport(1000, 1000)));
+
+        return new MultiSourceCatalog(Arrays.asList(usgs, emsc), timeToleranceMillis, distanceToleranceKm);
+    }
+
+    private static Map<String, String> parameters(String orderBy, int limit) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("orderby", orderBy);
+        parameters.put("limit", Integer.toString(limit));
+        return parameters;
+    }
+
+    private static List<String> getIds(List<Earthquake> earthquakes) {
+        String[] ids = new String[earthquakes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = earthquakes.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static String usgs(String... features) {
+        return "{\"type\":\"FeatureCollection\",\"features\":[" + join(features) + "]}";
+    }
+
+    private static String usgsFeature(String id, double magnitude, long time, double latitude, double longitude) {
+        return "{\"type\":\"Feature\",\"id\":\"" + id + "\",\"properties\":{\"mag\":" + magnitude
+                + ",\"place\":\"Somewhere\",\"time\":" + time + ",\"updated\":" + time
+                + ",\"url\":\"https://earthquake.usgs.gov/earthquakes/eventpage/" + id + "\"},"
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[" + longitude + "," + latitude + ",10.0]}}";
+    }
+
+    private static String emsc(String... features) {
+        return "{\"type\":\"FeatureCollection\",\"metadata\":{\"count\":" + features.length + "},\"features\":["
+                + join(features) + "]}";
+    }
+
+    private static String emscFeature(String unid, double magnitude, String time, double latitude, double longitude) {
+        return "{\"type\":\"Feature\",\"id\":\"" + unid + "\",\"geometry\":{\"type\":\"Point\",\"coordinates\":["
+                + longitude + "," + latitude + ",-10.0]},\"properties\":{\"time\":\"" + time + "\",\"lastupdate\":\""
+                + time + "\",\"flynn_region\":\"NEAR EAST COAST OF HONSHU, JAPAN\",\"lat\":" + latitude
+                + ",\"lon\":" + longitude + ",\"depth\":10.0,\"mag\":" + magnitude + ",\"unid\":\"" + unid + "\"}}";
+    }
+
+    private static String join(String[] parts) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                joined.append(',');
+            }
+            joined.append(parts[i]);
+        }
+        return joined.toString();
+    }
+}
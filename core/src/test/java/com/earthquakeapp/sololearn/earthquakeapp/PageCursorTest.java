@@ -0,0 +1,211 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class PageCursorTest {
+
+    // 2018-10-19T05:20:00Z
+    private static final long TIME = 1539926400000L;
+
+    private static final int PAGE_SIZE = 10;
+
+    @Test
+    public void timeOrder_pagesThroughTiesAtTheSameTime() {
+        List<Earthquake> catalog = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            catalog.add(earthquake("tie" + i, 5.0, TIME));
+        }
+        for (int i = 0; i < 30; i++) {
+            catalog.add(earthquake("older" + i, 4.5 + (i % 3) / 10.0, TIME - 60000 * (i / 2 + 1)));
+        }
+
+        List<Earthquake> listed = pageThrough(catalog, PageCursor.ORDER_BY_TIME);
+
+        assertListedOnce(catalog, listed);
+        for (int i = 1; i < listed.size(); i++) {
+            assertTrue(listed.get(i - 1).getDateInMilliseconds() >= listed.get(i).getDateInMilliseconds());
+        }
+    }
+
+    @Test
+    public void magnitudeOrder_pagesThroughTiesByTime() {
+        List<Earthquake> catalog = new ArrayList<>();
+        // Far more earthquakes of one magnitude than fit on a page, a few of them at the same time
+        for (int i = 0; i < 45; i++) {
+            catalog.add(earthquake("m45-" + i, 4.5, TIME - 60000 * (i / 3)));
+        }
+        for (int i = 0; i < 12; i++) {
+            catalog.add(earthquake("m50-" + i, 5.0, TIME - 30000 * i));
+        }
+        for (int i = 0; i < 4; i++) {
+            catalog.add(earthquake("m61-" + i, 6.1, TIME - 90000 * i));
+        }
+
+        List<Earthquake> listed = pageThrough(catalog, PageCursor.ORDER_BY_MAGNITUDE);
+
+        assertListedOnce(catalog, listed);
+        for (int i = 1; i < listed.size(); i++) {
+            assertTrue(listed.get(i - 1).getMagnitude() >= listed.get(i).getMagnitude());
+        }
+    }
+
+    @Test
+    public void magnitudeOrder_keepsTheLimitBoundedOnTies() {
+        List<Earthquake> catalog = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            catalog.add(earthquake("m45-" + i, 4.5, TIME - 60000 * (i / 2)));
+        }
+
+        PageCursor cursor = PageCursor.first(PageCursor.ORDER_BY_MAGNITUDE);
+        for (int i = 0; i < 20; i++) {
+            Map<String, String> parameters = cursor.getQueryParameters(PAGE_SIZE);
+
+            // Only the earthquakes at exactly the time of the last listed one are requested again
+            assertTrue(Integer.parseInt(parameters.get("limit")) <= PAGE_SIZE + 2);
+
+            cursor = cursor.next(query(catalog, parameters), PAGE_SIZE);
+        }
+    }
+
+    @Test
+    public void fullPageOfOneMagnitude_isListedByTime() {
+        List<Earthquake> catalog = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            catalog.add(earthquake("m50-" + i, 5.0, TIME - 60000 * i));
+        }
+        catalog.add(earthquake("m45", 4.5, TIME));
+
+        // More earthquakes of magnitude 5.0 may follow the full page, so it leaves all of them out
+        PageCursor cursor = PageCursor.first(PageCursor.ORDER_BY_MAGNITUDE);
+        List<Earthquake> response = query(catalog, cursor.getQueryParameters(PAGE_SIZE));
+        assertTrue(cursor.filter(response, PAGE_SIZE).isEmpty());
+        assertFalse(cursor.isLastPage(response));
+
+        cursor = cursor.next(response, PAGE_SIZE);
+        Map<String, String> parameters = cursor.getQueryParameters(PAGE_SIZE);
+        assertEquals(PageCursor.ORDER_BY_TIME, parameters.get("orderby"));
+        assertEquals("5.0", parameters.get("minmag"));
+        assertEquals("5.0", parameters.get("maxmagnitude"));
+
+        response = query(catalog, parameters);
+        assertEquals(getIds(catalog.subList(0, PAGE_SIZE)), getIds(cursor.filter(response, PAGE_SIZE)));
+
+        // The page is the last one at magnitude 5.0 only if it is short, so one more query finds out
+        cursor = cursor.next(response, PAGE_SIZE);
+        response = query(catalog, cursor.getQueryParameters(PAGE_SIZE));
+        assertTrue(cursor.filter(response, PAGE_SIZE).isEmpty());
+        assertFalse(cursor.isLastPage(response));
+
+        cursor = cursor.next(response, PAGE_SIZE);
+        response = query(catalog, cursor.getQueryParameters(PAGE_SIZE));
+        assertEquals(Collections.singletonList("m45"), getIds(cursor.filter(response, PAGE_SIZE)));
+    }
+
+    // Follow the cursors from the first page until the last one, like the pipeline does
+    private static List<Earthquake> pageThrough(List<Earthquake> catalog, String orderBy) {
+        List<Earthquake> listed = new ArrayList<>();
+        PageCursor cursor = PageCursor.first(orderBy);
+
+        for (int i = 0; i < 100; i++) {
+            List<Earthquake> response = query(catalog, cursor.getQueryParameters(PAGE_SIZE));
+            if (cursor.isLastPage(response)) {
+                return listed;
+            }
+
+            listed.addAll(cursor.filter(response, PAGE_SIZE));
+            cursor = cursor.next(response, PAGE_SIZE);
+        }
+
+        fail("The cursor did not reach the last page");
+        return listed;
+    }
+
+    private static List<String> getIds(List<Earthquake> earthquakes) {
+        List<String> ids = new ArrayList<>();
+        for (Earthquake earthquake : earthquakes) {
+            ids.add(earthquake.getId());
+        }
+        return ids;
+    }
+
+    private static void assertListedOnce(List<Earthquake> catalog, List<Earthquake> listed) {
+        Set<String> ids = new HashSet<>();
+        for (Earthquake earthquake : listed) {
+            assertTrue("Listed twice: " + earthquake.getId(), ids.add(earthquake.getId()));
+        }
+        assertEquals(catalog.size(), ids.size());
+    }
+
+    // Answer the query like the FDSN event service: the bounds are inclusive, and earthquakes of the
+    // same magnitude come in no particular order
+    private static List<Earthquake> query(List<Earthquake> catalog, Map<String, String> parameters) {
+        double minMagnitude = parseDouble(parameters.get("minmag"), Double.NEGATIVE_INFINITY);
+        double maxMagnitude = parseDouble(parameters.get("maxmagnitude"), Double.POSITIVE_INFINITY);
+        long endTime = parameters.containsKey("endtime") ? parseTime(parameters.get("endtime")) : Long.MAX_VALUE;
+        int limit = Integer.parseInt(parameters.get("limit"));
+
+        List<Earthquake> earthquakes = new ArrayList<>();
+        for (Earthquake earthquake : catalog) {
+            if (earthquake.getMagnitude() >= minMagnitude && earthquake.getMagnitude() <= maxMagnitude
+                    && earthquake.getDateInMilliseconds() <= endTime) {
+                earthquakes.add(earthquake);
+            }
+        }
+
+        Collections.shuffle(earthquakes, new Random(earthquakes.size()));
+        Collections.sort(earthquakes, getComparator(parameters.get("orderby")));
+
+        return earthquakes.subList(0, Math.min(limit, earthquakes.size()));
+    }
+
+    private static Comparator<Earthquake> getComparator(String orderBy) {
+        if (PageCursor.ORDER_BY_MAGNITUDE.equals(orderBy)) {
+            return new Comparator<Earthquake>() {
+                @Override
+                public int compare(Earthquake first, Earthquake second) {
+                    return Double.compare(second.getMagnitude(), first.getMagnitude());
+                }
+            };
+        }
+
+        return new Comparator<Earthquake>() {
+            @Override
+            public int compare(Earthquake first, Earthquake second) {
+                return Long.compare(second.getDateInMilliseconds(), first.getDateInMilliseconds());
+            }
+        };
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static long parseTime(String value) {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return timeFormat.parse(value).getTime();
+        } catch (ParseException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Earthquake earthquake(String id, double magnitude, long time) {
+        return new Earthquake(id, time, magnitude, "Somewhere", time, "", 0, 0, 10);
+    }
+}
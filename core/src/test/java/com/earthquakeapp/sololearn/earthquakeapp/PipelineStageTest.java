@@ -0,0 +1,151 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PipelineStageTest {
+
+    @Test
+    public void items_areProcessedInOrderByTheNextStage() throws InterruptedException {
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(5);
+
+        PipelineStage<Integer> last = new PipelineStage<>("last", 1, new PipelineStage.Worker<Integer>() {
+            @Override
+            public Integer process(Integer item) {
+                results.add(item);
+                done.countDown();
+                return null;
+            }
+        });
+        PipelineStage<Integer> first = new PipelineStage<>("first", 1, last, new PipelineStage.Worker<Integer>() {
+            @Override
+            public Integer process(Integer item) {
+                return item * 10;
+            }
+        });
+        last.start();
+        first.start();
+
+        for (int i = 1; i <= 5; i++) {
+            first.submit(i);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(10, 20, 30, 40, 50), results);
+        assertEquals(5, first.getStats().processedCount);
+
+        first.shutdown();
+        last.shutdown();
+    }
+
+    @Test
+    public void fullQueue_holdsBackTheSubmitter() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        final PipelineStage<Integer> stage = new PipelineStage<>("slow", 2, new PipelineStage.Worker<Integer>() {
+            @Override
+            public Integer process(Integer item) throws InterruptedException {
+                started.countDown();
+                release.await();
+                return null;
+            }
+        });
+        stage.start();
+
+        // One item is processed and two are queued, the fourth has to wait
+        stage.submit(1);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.submit(2);
+        stage.submit(3);
+        assertEquals(2, stage.getStats().queueDepth);
+
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stage.submit(4);
+                    submitted.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        submitter.start();
+
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+
+        stage.shutdown();
+    }
+
+    @Test
+    public void busyTime_excludesTheWaitForTheNextStage() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        PipelineStage<Integer> slow = new PipelineStage<>("slow", 1, new PipelineStage.Worker<Integer>() {
+            @Override
+            public Integer process(Integer item) throws InterruptedException {
+                release.await();
+                return null;
+            }
+        });
+        PipelineStage<Integer> fast = new PipelineStage<>("fast", 0, slow, new PipelineStage.Worker<Integer>() {
+            @Override
+            public Integer process(Integer item) {
+                return item;
+            }
+        });
+        slow.start();
+        fast.start();
+
+        // The slow stage works on the first item and queues the second, the third waits in the fast stage
+        for (int i = 1; i <= 3; i++) {
+            fast.submit(i);
+        }
+        Thread.sleep(300);
+
+        assertEquals(3, fast.getStats().processedCount);
+        assertTrue(fast.getStats().busyMillis < 100);
+
+        release.countDown();
+        fast.shutdown();
+        slow.shutdown();
+    }
+
+    @Test
+    public void interruptedWorker_doesNotStopTheStage() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final PipelineStage<Integer> stage = new PipelineStage<>("interrupted", 0, new PipelineStage.Worker<Integer>() {
+            @Override
+            public Integer process(Integer item) throws InterruptedException {
+                if (item == 1) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedException();
+                }
+                done.countDown();
+                return null;
+            }
+        });
+        stage.start();
+
+        stage.submit(1);
+        stage.submit(2);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        stage.shutdown();
+    }
+}
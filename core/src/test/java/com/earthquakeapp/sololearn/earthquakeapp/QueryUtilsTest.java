@@ -0,0 +1,45 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueryUtilsTest {
+
+    @Test
+    public void parseEarthquakes_skipsFeaturesWithoutMagnitude() throws IOException {
+        String response = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"id\":\"a\",\"properties\":{\"mag\":null,\"place\":\"Nowhere\",\"time\":3,\"url\":\"u\"}},"
+                + "{\"id\":\"b\",\"properties\":{\"mag\":4.6,\"place\":null,\"time\":2,\"url\":\"u\"},"
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[10,20,5]}},"
+                + "{\"id\":\"c\",\"properties\":{\"mag\":5.1,\"place\":\"Somewhere\",\"time\":1,\"url\":\"u\"},"
+                + "\"geometry\":null}]}";
+        long skippedBefore = QueryUtils.getSkippedFeatureCount();
+
+        List<Earthquake> earthquakes = QueryUtils.parseEarthquakes(response);
+
+        assertEquals(2, earthquakes.size());
+        assertEquals("b", earthquakes.get(0).getId());
+        assertEquals("", earthquakes.get(0).getLocation());
+        assertEquals("c", earthquakes.get(1).getId());
+        assertFalse(earthquakes.get(1).hasCoordinates());
+        assertEquals(skippedBefore + 1, QueryUtils.getSkippedFeatureCount());
+    }
+
+    @Test
+    public void emscDecode_skipsFeaturesWithoutMagnitude() throws IOException {
+        String response = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"id\":\"x\",\"properties\":{\"unid\":\"x\",\"mag\":null,\"time\":\"2018-10-19T05:20:34.1Z\"}},"
+                + "{\"id\":\"y\",\"properties\":{\"unid\":\"y\",\"mag\":3.2,\"flynn_region\":null,"
+                + "\"time\":\"2018-10-19T05:20:34.1Z\",\"lat\":40.1,\"lon\":20.2,\"depth\":10}}]}";
+
+        List<Earthquake> earthquakes = new EmscEarthquakeSource(EmscEarthquakeSource.EMSC_URL).decode(response);
+
+        assertEquals(1, earthquakes.size());
+        assertEquals("y", earthquakes.get(0).getId());
+        assertEquals("", earthquakes.get(0).getLocation());
+    }
+}
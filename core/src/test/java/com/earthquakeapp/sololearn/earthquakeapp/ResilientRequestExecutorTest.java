@@ -0,0 +1,216 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ResilientRequestExecutorTest {
+
+    private static final String BODY = "{\"type\":\"FeatureCollection\",\"features\":[]}";
+
+    private FaultInjectingServer mServer;
+    private ResilientRequestExecutor mExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new FaultInjectingServer(BODY);
+        mExecutor = new ResilientRequestExecutor(new HttpTransport(1000, 1000));
+        mExecutor.setBackoff(1, 10);
+        mExecutor.setHedging(0.95, 10, 5000);
+        mExecutor.setCircuitBreaker(new CircuitBreaker(2, 60000));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void transientFailures_areRetried() throws IOException {
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+        mServer.enqueue(FaultInjectingServer.Fault.status(502));
+
+        mExecutor.setCircuitBreaker(new CircuitBreaker(5, 60000));
+
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(2, mExecutor.getStats().retryCount);
+    }
+
+    @Test
+    public void clientErrors_areNotRetried() throws IOException {
+        mServer.enqueue(FaultInjectingServer.Fault.status(400));
+
+        try {
+            mExecutor.execute(mServer.getUrl());
+            fail("Expected the client error to be thrown");
+        } catch (HttpStatusException e) {
+            assertEquals(400, e.getResponseCode());
+        }
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, mExecutor.getStats().circuitState);
+    }
+
+    @Test
+    public void slowRequest_isHedged() throws IOException {
+        mExecutor.setHedging(0.95, 10, 100);
+        mServer.enqueue(FaultInjectingServer.Fault.delay(800));
+
+        long start = System.currentTimeMillis();
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+
+        assertTrue(System.currentTimeMillis() - start < 800);
+        assertEquals(1, mExecutor.getStats().hedgeCount);
+        assertEquals(1, mExecutor.getStats().hedgeWinCount);
+    }
+
+    @Test
+    public void openCircuit_servesLastGoodResponse() throws IOException {
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+
+        // Both attempts fail and trip the breaker, the cached response is served instead
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+        assertEquals(CircuitBreaker.State.OPEN, mExecutor.getStats().circuitState);
+
+        // While the circuit is open the backend is not contacted at all
+        int requestCount = mServer.getRequestCount();
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+        assertEquals(requestCount, mServer.getRequestCount());
+        assertEquals(2, mExecutor.getStats().fallbackCount);
+    }
+
+    @Test
+    public void disabledHedgingAndFallback_sendOneRequestAndThrowFailures() throws IOException {
+        mExecutor.setHedging(0.95, 10, 100);
+        mExecutor.setHedgingEnabled(false);
+        mExecutor.setFallbackEnabled(false);
+        mServer.enqueue(FaultInjectingServer.Fault.delay(400));
+
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(0, mExecutor.getStats().hedgeCount);
+
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+
+        // The good response above was not kept
+        try {
+            mExecutor.execute(mServer.getUrl());
+            fail("Expected the failure to be thrown");
+        } catch (HttpStatusException e) {
+            assertEquals(503, e.getResponseCode());
+        }
+        assertEquals(0, mExecutor.getStats().fallbackCount);
+    }
+
+    @Test(expected = IOException.class)
+    public void openCircuit_withoutCachedResponse_fails() throws IOException {
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+
+        mExecutor.execute(mServer.getUrl());
+    }
+
+    @Test
+    public void readTimeouts_areRetriedAndServeTheLastGoodResponse() throws IOException {
+        ResilientRequestExecutor executor = new ResilientRequestExecutor(new HttpTransport(1000, 200));
+        executor.setBackoff(1, 10);
+        executor.setHedging(0.95, 10, 5000);
+        executor.setCircuitBreaker(new CircuitBreaker(3, 60000));
+
+        assertEquals(BODY, executor.execute(mServer.getUrl()));
+
+        mServer.enqueue(FaultInjectingServer.Fault.delay(600));
+        mServer.enqueue(FaultInjectingServer.Fault.delay(600));
+        mServer.enqueue(FaultInjectingServer.Fault.delay(600));
+
+        // Every attempt times out and counts against the breaker, the cached response is served instead
+        ResilientRequestExecutor.Response response = executor.executeForResponse(mServer.getUrl());
+        assertEquals(BODY, response.body);
+        assertTrue(response.stale);
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(2, executor.getStats().retryCount);
+        assertEquals(1, executor.getStats().fallbackCount);
+        assertEquals(0, executor.getStats().failureCount);
+        assertEquals(CircuitBreaker.State.OPEN, executor.getStats().circuitState);
+
+        // Without a cached response the request fails
+        try {
+            executor.execute(new URL(mServer.getUrl() + "?minmag=5"));
+            fail("Expected the open circuit to fail the request");
+        } catch (IOException e) {
+            assertEquals(1, executor.getStats().failureCount);
+        }
+    }
+
+    @Test
+    public void halfOpenTrial_endingInClientError_releasesTheTrial() throws Exception {
+        tripCircuit();
+
+        mServer.enqueue(FaultInjectingServer.Fault.status(404));
+        try {
+            mExecutor.execute(mServer.getUrl());
+            fail("Expected the client error to be thrown");
+        } catch (HttpStatusException e) {
+            assertEquals(404, e.getResponseCode());
+        }
+
+        // The next trial is let through and closes the circuit
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+        assertEquals(CircuitBreaker.State.CLOSED, mExecutor.getStats().circuitState);
+    }
+
+    @Test
+    public void halfOpenTrial_interrupted_releasesTheTrial() throws Exception {
+        tripCircuit();
+
+        mServer.enqueue(FaultInjectingServer.Fault.delay(5000));
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mExecutor.execute(mServer.getUrl());
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        thread.start();
+        Thread.sleep(200);
+        thread.interrupt();
+        thread.join(2000);
+
+        assertTrue(failure.get() instanceof InterruptedIOException);
+
+        assertEquals(BODY, mExecutor.execute(mServer.getUrl()));
+        assertEquals(CircuitBreaker.State.CLOSED, mExecutor.getStats().circuitState);
+    }
+
+    // Fail twice to open the circuit, then wait until it lets a trial request through
+    private void tripCircuit() throws Exception {
+        mExecutor.setCircuitBreaker(new CircuitBreaker(2, 100));
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+        mServer.enqueue(FaultInjectingServer.Fault.status(503));
+
+        try {
+            mExecutor.execute(mServer.getUrl());
+            fail("Expected the request to fail");
+        } catch (IOException e) {
+            assertEquals(CircuitBreaker.State.OPEN, mExecutor.getStats().circuitState);
+        }
+
+        Thread.sleep(150);
+    }
+}
@@ -0,0 +1,192 @@
+package com.earthquakeapp.sololearn.earthquakeapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+
+    private static final String URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void normalizeKey_ignoresParameterOrderAndNumberFormat() {
+        assertEquals(
+                ResponseCache.normalizeKey(URL + "?format=geojson&offset=1&limit=20&minmag=6&orderby=time"),
+                ResponseCache.normalizeKey(URL + "?orderby=time&minmag=6.0&limit=20&offset=1&format=geojson"));
+
+        assertNotEquals(
+                ResponseCache.normalizeKey(URL + "?minmag=6&orderby=time"),
+                ResponseCache.normalizeKey(URL + "?minmag=6&orderby=magnitude"));
+    }
+
+    @Test
+    public void normalizeKey_keepsSchemePortAndNonNumericValues() {
+        assertNotEquals(
+                ResponseCache.normalizeKey("http://127.0.0.1:8080/query?minmag=6"),
+                ResponseCache.normalizeKey("http://127.0.0.1:8081/query?minmag=6"));
+        assertNotEquals(
+                ResponseCache.normalizeKey("http://earthquake.usgs.gov/query?minmag=6"),
+                ResponseCache.normalizeKey("https://earthquake.usgs.gov/query?minmag=6"));
+        assertEquals(
+                ResponseCache.normalizeKey("https://earthquake.usgs.gov/query?minmag=6"),
+                ResponseCache.normalizeKey("https://EARTHQUAKE.usgs.gov:443/query?minmag=6"));
+
+        // Event ids are case sensitive and are not numbers, even if they look like one
+        assertNotEquals(
+                ResponseCache.normalizeKey(URL + "?eventid=us1000ABCD"),
+                ResponseCache.normalizeKey(URL + "?eventid=us1000abcd"));
+        assertNotEquals(
+                ResponseCache.normalizeKey(URL + "?eventid=10.50"),
+                ResponseCache.normalizeKey(URL + "?eventid=10.5"));
+    }
+
+    @Test
+    public void staleFallback_isNotStoredAgain() throws IOException {
+        FaultInjectingServer server = new FaultInjectingServer("{\"features\":[]}");
+        ResponseCache cache = new ResponseCache(mFolder.newFolder(), 1024 * 1024);
+        ResilientRequestExecutor executor = new ResilientRequestExecutor(new HttpTransport(1000, 1000));
+        executor.setBackoff(1, 10);
+        executor.setCircuitBreaker(new CircuitBreaker(2, 60000));
+        String requestUrl = server.getUrl() + "?minmag=6";
+
+        QueryUtils.setResponseCache(cache);
+        try {
+            QueryUtils.fetchResponse(executor, requestUrl, true);
+            assertEquals(1, cache.getStats().entryCount);
+            cache.clear();
+
+            // The backend fails, the executor serves its last good response instead
+            server.enqueue(FaultInjectingServer.Fault.status(503));
+            server.enqueue(FaultInjectingServer.Fault.status(503));
+            assertEquals("{\"features\":[]}", QueryUtils.fetchResponse(executor, requestUrl, true));
+
+            assertEquals(1, executor.getStats().fallbackCount);
+            assertEquals(0, cache.getStats().entryCount);
+        } finally {
+            QueryUtils.setResponseCache(null);
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void get_returnsStoredResponseUntilItExpires() throws Exception {
+        ResponseCache cache = new ResponseCache(mFolder.newFolder(), 1024 * 1024);
+
+        cache.put("first", "{\"features\":[]}", 60000);
+        cache.put("second", "{}", 50);
+
+        assertEquals("{\"features\":[]}", cache.get("first"));
+        Thread.sleep(100);
+        assertNull(cache.get("second"));
+
+        ResponseCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hitCount);
+        assertEquals(1, stats.missCount);
+        assertEquals(1, stats.expiredCount);
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedEntries() throws IOException {
+        File directory = mFolder.newFolder();
+        String response = repeat("x", 100);
+
+        // Find out how large a single compressed entry is
+        ResponseCache probe = new ResponseCache(mFolder.newFolder(), Long.MAX_VALUE);
+        probe.put("key-0", response, 60000);
+        long entryBytes = probe.getStats().totalBytes;
+
+        ResponseCache cache = new ResponseCache(directory, entryBytes * 2);
+        cache.put("key-1", response, 60000);
+        cache.put("key-2", response, 60000);
+        assertNotNull(cache.get("key-1"));
+
+        // "key-2" is now the least recently used one
+        cache.put("key-3", response, 60000);
+
+        assertNotNull(cache.get("key-1"));
+        assertNull(cache.get("key-2"));
+        assertNotNull(cache.get("key-3"));
+        assertEquals(1, cache.getStats().evictionCount);
+    }
+
+    @Test
+    public void entries_surviveReopening() throws IOException {
+        File directory = mFolder.newFolder();
+
+        new ResponseCache(directory, 1024 * 1024).put("key", "response", 60000);
+
+        assertEquals("response", new ResponseCache(directory, 1024 * 1024).get("key"));
+    }
+
+    @Test
+    public void concurrentPutsAndGets_keepTheIndexInLineWithTheFiles() throws Exception {
+        final File directory = mFolder.newFolder();
+        final String response = repeat("x", 200);
+
+        ResponseCache probe = new ResponseCache(mFolder.newFolder(), Long.MAX_VALUE);
+        probe.put("key-0", response + 0, 60000);
+
+        // Room for about half of the keys, so entries are evicted while they are read
+        final ResponseCache cache = new ResponseCache(directory, probe.getStats().totalBytes * 5);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 300; i++) {
+                        int key = random.nextInt(10);
+                        if (random.nextBoolean()) {
+                            cache.put("key-" + key, response + key, 60000);
+                        } else {
+                            String cached = cache.get("key-" + key);
+                            if (cached != null && !cached.equals(response + key)) {
+                                failure.set("Wrong response for key-" + key);
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+
+        long totalBytes = 0;
+        File[] files = directory.listFiles();
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        ResponseCache.Stats stats = cache.getStats();
+        assertEquals(files.length, stats.entryCount);
+        assertEquals(totalBytes, stats.totalBytes);
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value).append(i);
+        }
+        return builder.toString();
+    }
+}
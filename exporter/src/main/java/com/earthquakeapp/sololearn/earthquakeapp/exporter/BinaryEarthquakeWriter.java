@@ -0,0 +1,45 @@
+package com.earthquakeapp.sololearn.earthquakeapp.exporter;
+
+import com.earthquakeapp.sololearn.earthquakeapp.Earthquake;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Compact binary format, readable with a DataInputStream. The file starts with the MAGIC int and
+// the VERSION short, followed by records until the end of the file:
+//
+//   UTF id, long time, long updated, float magnitude, float latitude, float longitude, float depth, UTF place
+//
+// Missing coordinates are stored as NaN. The details URL is left out, it can be rebuilt from the id.
+public class BinaryEarthquakeWriter implements EarthquakeWriter {
+
+    public static final int MAGIC = 0x45514b31; // "EQK1"
+    public static final short VERSION = 1;
+
+    private final DataOutputStream mOutput;
+
+    public BinaryEarthquakeWriter(OutputStream outputStream) throws IOException {
+        mOutput = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        mOutput.writeInt(MAGIC);
+        mOutput.writeShort(VERSION);
+    }
+
+    @Override
+    public void write(Earthquake earthquake) throws IOException {
+        mOutput.writeUTF(earthquake.getId());
+        mOutput.writeLong(earthquake.getDateInMilliseconds());
+        mOutput.writeLong(earthquake.getUpdatedInMilliseconds());
+        mOutput.writeFloat((float) earthquake.getMagnitude());
+        mOutput.writeFloat((float) earthquake.getLatitude());
+        mOutput.writeFloat((float) earthquake.getLongitude());
+        mOutput.writeFloat((float) earthquake.getDepth());
+        mOutput.writeUTF(earthquake.getLocation());
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOutput.close();
+    }
+}
@@ -0,0 +1,251 @@
+package com.earthquakeapp.sololearn.earthquakeapp.exporter;
+
+import com.earthquakeapp.sololearn.earthquakeapp.Earthquake;
+import com.earthquakeapp.sololearn.earthquakeapp.HttpTransport;
+import com.earthquakeapp.sololearn.earthquakeapp.QueryUtils;
+import com.earthquakeapp.sololearn.earthquakeapp.ResilientRequestExecutor;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Exports all earthquakes of a date range into a CSV or binary file.
+//
+// The range is split into time windows which are fetched in parallel, but written in order as
+// soon as the oldest window is complete. At most twice as many windows as threads are held in
+// memory at any time, so the memory use does not depend on the length of the range.
+public class BulkCatalogExporter {
+
+    private static final String DEFAULT_URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    // The USGS service refuses queries which match more events than this
+    private static final int MAX_EVENTS_PER_QUERY = 20000;
+
+    // Windows are never split below this size, a single minute will not hold too many events
+    private static final long MIN_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String USAGE = "Usage: exporter --start yyyy-MM-dd --end yyyy-MM-dd --output file\n"
+            + "    [--format csv|binary] [--minmag magnitude] [--threads count] [--window-days days] [--url url]\n"
+            + "The end date is exclusive.";
+
+    private final String mBaseUrl;
+    private final String mMinMagnitude;
+    private final int mThreads;
+    private final int mMaxEventsPerQuery;
+    private final ResilientRequestExecutor mRequestExecutor;
+
+    private long mWindowCount;
+    private long mEarthquakeCount;
+
+    public BulkCatalogExporter(String baseUrl, String minMagnitude, int threads) {
+        this(baseUrl, minMagnitude, threads, MAX_EVENTS_PER_QUERY);
+    }
+
+    // Tests use a small query limit, so that splitting does not need tens of thousands of events
+    BulkCatalogExporter(String baseUrl, String minMagnitude, int threads, int maxEventsPerQuery) {
+        mBaseUrl = baseUrl;
+        mMinMagnitude = minMagnitude;
+        mThreads = threads;
+        mMaxEventsPerQuery = maxEventsPerQuery;
+
+        // A window holds up to 20000 events, so a hedged duplicate would double a huge download and
+        // the fallback would keep dozens of such responses in memory. Failed windows fail the export.
+        mRequestExecutor = new ResilientRequestExecutor(new HttpTransport(15000, 10000));
+        mRequestExecutor.setHedgingEnabled(false);
+        mRequestExecutor.setFallbackEnabled(false);
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options;
+        long start;
+        long end;
+        long windowMillis;
+        int threads;
+
+        try {
+            options = parseOptions(args);
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            start = dateFormat.parse(require(options, "start")).getTime();
+            end = dateFormat.parse(require(options, "end")).getTime();
+            require(options, "output");
+
+            windowMillis = TimeUnit.DAYS.toMillis(Long.parseLong(getOption(options, "window-days", "1")));
+            threads = Integer.parseInt(getOption(options, "threads", "4"));
+
+            if (end <= start || windowMillis <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("The date range, window and thread count must be positive");
+            }
+        } catch (IllegalArgumentException | ParseException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        String format = getOption(options, "format", "csv");
+        BulkCatalogExporter exporter = new BulkCatalogExporter(getOption(options, "url", DEFAULT_URL),
+                getOption(options, "minmag", null), threads);
+
+        long startTime = System.nanoTime();
+
+        try (FileOutputStream outputStream = new FileOutputStream(options.get("output"));
+             EarthquakeWriter writer = "binary".equals(format)
+                     ? new BinaryEarthquakeWriter(outputStream)
+                     : new CsvEarthquakeWriter(outputStream)) {
+            exporter.export(start, end, windowMillis, writer);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        System.err.println("Exported " + exporter.mEarthquakeCount + " earthquakes from " + exporter.mWindowCount
+                + " windows in " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime) + " s");
+        System.err.println("Skipped " + QueryUtils.getSkippedFeatureCount() + " events without a magnitude or time");
+        System.err.println("Requests: " + exporter.mRequestExecutor.getStats());
+    }
+
+    // Fetch the earthquakes between start (inclusive) and end (exclusive) and write them oldest first
+    public void export(long start, long end, long windowMillis, EarthquakeWriter writer)
+            throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+        Deque<Future<List<Earthquake>>> pending = new ArrayDeque<>();
+        int maxPending = mThreads * 2;
+        long windowStart = start;
+
+        try {
+            while (windowStart < end || !pending.isEmpty()) {
+                // Keep the threads busy, but do not run too far ahead of the writer
+                while (windowStart < end && pending.size() < maxPending) {
+                    final long from = windowStart;
+                    final long to = Math.min(end, windowStart + windowMillis);
+
+                    pending.add(executor.submit(new Callable<List<Earthquake>>() {
+                        @Override
+                        public List<Earthquake> call() throws IOException {
+                            return fetchWindow(from, to);
+                        }
+                    }));
+
+                    windowStart = to;
+                }
+
+                List<Earthquake> earthquakes = getResult(pending.poll());
+                for (Earthquake earthquake : earthquakes) {
+                    writer.write(earthquake);
+                }
+
+                mWindowCount++;
+                mEarthquakeCount += earthquakes.size();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Return the earthquakes of the window oldest first, windows with too many events are split in halves
+    private List<Earthquake> fetchWindow(long from, long to) throws IOException {
+        List<Earthquake> earthquakes = QueryUtils.fetchEarthquakes(mRequestExecutor, buildUrl(from, to));
+
+        if (earthquakes.size() < mMaxEventsPerQuery || to - from <= MIN_WINDOW_MILLIS) {
+            return earthquakes;
+        }
+
+        long middle = from + (to - from) / 2;
+        earthquakes = new ArrayList<>(fetchWindow(from, middle));
+        earthquakes.addAll(fetchWindow(middle, to));
+
+        return earthquakes;
+    }
+
+    private String buildUrl(long from, long to) {
+        // SimpleDateFormat is not thread safe
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // The end time of the service is inclusive, so stop right before the next window starts
+        StringBuilder url = new StringBuilder(mBaseUrl)
+                .append("?format=geojson&orderby=time-asc")
+                .append("&limit=").append(mMaxEventsPerQuery)
+                .append("&starttime=").append(timeFormat.format(from))
+                .append("&endtime=").append(timeFormat.format(to - 1));
+
+        if (mMinMagnitude != null) {
+            url.append("&minmag=").append(encode(mMinMagnitude));
+        }
+
+        return url.toString();
+    }
+
+    long getWindowCount() {
+        return mWindowCount;
+    }
+
+    long getEarthquakeCount() {
+        return mEarthquakeCount;
+    }
+
+    private static List<Earthquake> getResult(Future<List<Earthquake>> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Invalid argument: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        return options;
+    }
+
+    private static String require(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    private static String getOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,70 @@
+package com.earthquakeapp.sololearn.earthquakeapp.exporter;
+
+import com.earthquakeapp.sololearn.earthquakeapp.Earthquake;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+// Writes one line per earthquake, times are epoch milliseconds to keep the lines short
+public class CsvEarthquakeWriter implements EarthquakeWriter {
+
+    private static final String HEADER = "id,time,updated,magnitude,latitude,longitude,depth,place,url";
+
+    private final Writer mWriter;
+
+    public CsvEarthquakeWriter(OutputStream outputStream) throws IOException {
+        mWriter = new BufferedWriter(new OutputStreamWriter(outputStream, Charset.forName("UTF-8")), 64 * 1024);
+        mWriter.write(HEADER);
+        mWriter.write('\n');
+    }
+
+    @Override
+    public void write(Earthquake earthquake) throws IOException {
+        mWriter.write(escape(earthquake.getId()));
+        mWriter.write(',');
+        mWriter.write(Long.toString(earthquake.getDateInMilliseconds()));
+        mWriter.write(',');
+        mWriter.write(Long.toString(earthquake.getUpdatedInMilliseconds()));
+        mWriter.write(',');
+        mWriter.write(Double.toString(earthquake.getMagnitude()));
+        mWriter.write(',');
+        mWriter.write(formatCoordinate(earthquake.getLatitude()));
+        mWriter.write(',');
+        mWriter.write(formatCoordinate(earthquake.getLongitude()));
+        mWriter.write(',');
+        mWriter.write(formatCoordinate(earthquake.getDepth()));
+        mWriter.write(',');
+        mWriter.write(escape(earthquake.getLocation()));
+        mWriter.write(',');
+        mWriter.write(escape(earthquake.getDetailsUrl()));
+        mWriter.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+
+    // Missing coordinates are left empty
+    private static String formatCoordinate(double value) {
+        return Double.isNaN(value) ? "" : Double.toString(value);
+    }
+
+    // Quote fields containing separators or line breaks, quotes inside are doubled
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
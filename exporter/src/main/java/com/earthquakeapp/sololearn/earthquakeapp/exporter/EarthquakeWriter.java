@@ -0,0 +1,12 @@
+package com.earthquakeapp.sololearn.earthquakeapp.exporter;
+
+import com.earthquakeapp.sololearn.earthquakeapp.Earthquake;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Streams earthquakes into an export file one at a time
+public interface EarthquakeWriter extends Closeable {
+
+    void write(Earthquake earthquake) throws IOException;
+}
@@ -0,0 +1,172 @@
+package com.earthquakeapp.sololearn.earthquakeapp.exporter;
+
+import com.earthquakeapp.sololearn.earthquakeapp.Earthquake;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BulkCatalogExporterTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long START = 1527811200000L; // 2018-06-01
+    private static final int MAX_EVENTS_PER_QUERY = 10;
+
+    private final List<Long> mEventTimes = new ArrayList<>();
+    private final List<Long> mRequestedWindows = new CopyOnWriteArrayList<>();
+    private final Random mRandom = new Random(7);
+    private HttpServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        // Four quiet days and one busy day which does not fit into a single query
+        for (int day = 0; day < 5; day++) {
+            int count = day == 2 ? 35 : 3;
+            for (int i = 0; i < count; i++) {
+                mEventTimes.add(START + day * DAY + i * (DAY / count));
+            }
+        }
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void export_writesEveryEventOnceOldestFirst() throws Exception {
+        BulkCatalogExporter exporter = new BulkCatalogExporter(getUrl(), null, 4, MAX_EVENTS_PER_QUERY);
+        RecordingWriter writer = new RecordingWriter();
+
+        exporter.export(START, START + 5 * DAY, DAY, writer);
+
+        assertEquals(mEventTimes.size(), writer.times.size());
+        assertEquals(mEventTimes, writer.times);
+        assertEquals(5, exporter.getWindowCount());
+        assertEquals(mEventTimes.size(), exporter.getEarthquakeCount());
+    }
+
+    @Test
+    public void export_splitsWindowsWithTooManyEvents() throws Exception {
+        BulkCatalogExporter exporter = new BulkCatalogExporter(getUrl(), null, 2, MAX_EVENTS_PER_QUERY);
+
+        exporter.export(START + 2 * DAY, START + 3 * DAY, DAY, new RecordingWriter());
+
+        // Halves of the day still hit the query limit, quarters hold 8 or 9 of the 35 events
+        assertTrue(mRequestedWindows.contains(DAY));
+        assertTrue(mRequestedWindows.contains(DAY / 2));
+        assertTrue(mRequestedWindows.contains(DAY / 4));
+        assertFalse(mRequestedWindows.contains(DAY / 8));
+        assertEquals(1 + 2 + 4, mRequestedWindows.size());
+        assertEquals(35, exporter.getEarthquakeCount());
+    }
+
+    private String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/fdsnws/event/1/query";
+    }
+
+    // Answer like the FDSN service: inclusive time bounds, oldest first and at most limit events
+    private void respond(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        long start;
+        long end;
+        try {
+            start = parseTime(query.get("starttime"));
+            end = parseTime(query.get("endtime"));
+        } catch (ParseException e) {
+            throw new IOException(e);
+        }
+        int limit = Integer.parseInt(query.get("limit"));
+        mRequestedWindows.add(end + 1 - start);
+
+        StringBuilder body = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        int count = 0;
+        for (long time : mEventTimes) {
+            if (time >= start && time <= end && count < limit) {
+                if (count++ > 0) {
+                    body.append(',');
+                }
+                body.append("{\"type\":\"Feature\",\"id\":\"ev").append(time)
+                        .append("\",\"properties\":{\"mag\":4.5,\"place\":\"Somewhere\",\"time\":").append(time)
+                        .append(",\"url\":\"https://example.com/ev").append(time).append("\"},")
+                        .append("\"geometry\":{\"type\":\"Point\",\"coordinates\":[10,20,5]}}");
+            }
+        }
+        body.append("]}");
+
+        // Random delays make the windows complete out of order
+        try {
+            Thread.sleep(mRandom.nextInt(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] bytes = body.toString().getBytes(Charset.forName("UTF-8"));
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(bytes);
+        outputStream.close();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            parameters.put(parameter.substring(0, separator),
+                    URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static long parseTime(String value) throws ParseException {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return timeFormat.parse(value).getTime();
+    }
+
+    private static class RecordingWriter implements EarthquakeWriter {
+        final List<Long> times = new ArrayList<>();
+
+        @Override
+        public void write(Earthquake earthquake) {
+            times.add(earthquake.getDateInMilliseconds());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
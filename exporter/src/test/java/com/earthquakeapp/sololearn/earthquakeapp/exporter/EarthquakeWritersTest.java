@@ -0,0 +1,74 @@
+package com.earthquakeapp.sololearn.earthquakeapp.exporter;
+
+import com.earthquakeapp.sololearn.earthquakeapp.Earthquake;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class EarthquakeWritersTest {
+
+    private static final Earthquake FIRST = new Earthquake("us1000abcd", 1528500000000L, 5.4,
+            "12km NE of Town, \"Region\", Country", 1528490000000L, "https://example.com/us1000abcd",
+            -17.25, 179.5, 550.5);
+    private static final Earthquake SECOND = new Earthquake("ev2", 1528400000000L, 4.6,
+            "Line\rbreak", 1528400000000L, "https://example.com/ev2", Double.NaN, Double.NaN, Double.NaN);
+
+    @Test
+    public void csv_quotesSeparatorsQuotesAndLineBreaks() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (CsvEarthquakeWriter writer = new CsvEarthquakeWriter(output)) {
+            writer.write(FIRST);
+            writer.write(SECOND);
+        }
+
+        String[] lines = output.toString("UTF-8").split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,time,updated,magnitude,latitude,longitude,depth,place,url", lines[0]);
+        assertEquals("us1000abcd,1528490000000,1528500000000,5.4,-17.25,179.5,550.5,"
+                + "\"12km NE of Town, \"\"Region\"\", Country\",https://example.com/us1000abcd", lines[1]);
+        // Missing coordinates stay empty, a lone carriage return must be quoted as well
+        assertEquals("ev2,1528400000000,1528400000000,4.6,,,,\"Line\rbreak\",https://example.com/ev2", lines[2]);
+    }
+
+    @Test
+    public void binary_roundTrips() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (BinaryEarthquakeWriter writer = new BinaryEarthquakeWriter(output)) {
+            writer.write(FIRST);
+            writer.write(SECOND);
+        }
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(BinaryEarthquakeWriter.MAGIC, input.readInt());
+        assertEquals("EQK1", new String(output.toByteArray(), 0, 4, "US-ASCII"));
+        assertEquals(BinaryEarthquakeWriter.VERSION, input.readShort());
+
+        assertRecord(FIRST, input);
+        assertRecord(SECOND, input);
+
+        try {
+            input.readUTF();
+            fail("Expected the end of the file");
+        } catch (EOFException e) {
+            // Nothing follows the last record
+        }
+    }
+
+    private static void assertRecord(Earthquake expected, DataInputStream input) throws IOException {
+        assertEquals(expected.getId(), input.readUTF());
+        assertEquals(expected.getDateInMilliseconds(), input.readLong());
+        assertEquals(expected.getUpdatedInMilliseconds(), input.readLong());
+        assertEquals(expected.getMagnitude(), input.readFloat(), 1e-6);
+        assertEquals(expected.getLatitude(), input.readFloat(), 1e-4);
+        assertEquals(expected.getLongitude(), input.readFloat(), 1e-4);
+        assertEquals(expected.getDepth(), input.readFloat(), 1e-3);
+        assertEquals(expected.getLocation(), input.readUTF());
+    }
+}